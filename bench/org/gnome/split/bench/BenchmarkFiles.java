@@ -0,0 +1,196 @@
+/*
+ * BenchmarkFiles.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.bench;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import org.gnome.split.config.Configuration;
+import org.gnome.split.core.EngineFactory;
+import org.gnome.split.core.merger.DefaultMergeEngine;
+import org.gnome.split.core.model.MergeModel;
+import org.gnome.split.core.model.SplitModel;
+import org.gnome.split.core.splitter.DefaultSplitEngine;
+
+/**
+ * Helpers shared by the benchmarks to create the files to work on and the
+ * engines to run. Nothing here needs the user interface, so the benchmarks
+ * can run without java-gnome.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class BenchmarkFiles
+{
+    /**
+     * System property giving the directory where the files are created.
+     */
+    public static final String DIRECTORY_PROPERTY = "gnome-split.bench.dir";
+
+    /**
+     * Extensions of the first part created by each algorithm, indexed by the
+     * algorithm ID.
+     */
+    private static final String[] FIRST_PARTS = new String[] {
+        ".001", ".001.gsp", ".001.xtm", ".kk0", ".001.yct", ".001.cdc", ".001.gsz"
+    };
+
+    private BenchmarkFiles() {
+        // No instantiation from outside
+    }
+
+    /**
+     * Get a new directory, inside the benchmark directory, to work in.
+     */
+    public static File createDirectory(String name) {
+        File parent = new File(System.getProperty(DIRECTORY_PROPERTY, System.getProperty("java.io.tmpdir")));
+        File directory = new File(parent, "gnome-split-bench" + File.separator + name);
+
+        clean(directory);
+        directory.mkdirs();
+        return directory;
+    }
+
+    /**
+     * Create a configuration, stored in the <code>directory</code>, which
+     * does not use MD5 sums unless <code>hash</code> is set.
+     */
+    public static Configuration createConfiguration(File directory, boolean hash) throws IOException {
+        Configuration config = new Configuration(new File(directory, "config"));
+        config.SAVE_FILE_HASH = hash;
+        config.CHECK_FILE_HASH = hash;
+        config.DELETE_PARTS = false;
+        config.OPEN_FILE_AT_END = false;
+        return config;
+    }
+
+    /**
+     * Create a file of <code>length</code> random bytes.
+     */
+    public static void createFile(File file, long length) throws IOException {
+        RandomAccessFile access = new RandomAccessFile(file, "rw");
+        try {
+            byte[] data = new byte[1024 * 1024];
+            new Random(42).nextBytes(data);
+
+            access.setLength(0);
+            for (long written = 0; written < length; written += data.length) {
+                access.write(data, 0, (int) Math.min(data.length, length - written));
+            }
+        } finally {
+            access.close();
+        }
+    }
+
+    /**
+     * Remove a directory and everything it contains.
+     */
+    public static void clean(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                clean(file);
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Create an engine which splits the <code>file</code> in
+     * <code>parts</code> parts, written in the <code>directory</code>.
+     */
+    public static DefaultSplitEngine createSplitter(Configuration config, QuietListener listener,
+            final File file, final File directory, final int algorithm, final int parts) {
+        return EngineFactory.createSplitEngine(config, listener, new SplitModel() {
+            @Override
+            public File getFile() {
+                return file;
+            }
+
+            @Override
+            public File getDirectory() {
+                return directory;
+            }
+
+            @Override
+            public String getDestination() {
+                return directory.getAbsolutePath() + File.separator + file.getName();
+            }
+
+            @Override
+            public long getMaxSize() {
+                return Math.max(1, (file.length() + parts - 1) / parts);
+            }
+
+            @Override
+            public int getAlgorithm() {
+                return algorithm;
+            }
+        });
+    }
+
+    /**
+     * Find the first part written in the <code>directory</code> by the
+     * <code>algorithm</code>. Some algorithms drop the extension of the
+     * original file, so the name can't just be guessed.
+     */
+    public static File findFirstPart(File directory, int algorithm) throws IOException {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(FIRST_PARTS[algorithm])) {
+                    return file;
+                }
+            }
+        }
+
+        throw new FileNotFoundException(directory + File.separator + "*" + FIRST_PARTS[algorithm]);
+    }
+
+    /**
+     * Create an engine which merges the parts written in the
+     * <code>directory</code> by the <code>algorithm</code> into the
+     * <code>merged</code> file.
+     */
+    public static DefaultMergeEngine createMerger(Configuration config, QuietListener listener,
+            File directory, int algorithm, final File merged) throws IOException {
+        final File first = findFirstPart(directory, algorithm);
+
+        return EngineFactory.createMergeEngine(config, listener, new MergeModel() {
+            @Override
+            public File getFile() {
+                return first;
+            }
+
+            @Override
+            public File getDirectory() {
+                return merged.getParentFile();
+            }
+
+            @Override
+            public String getDestination() {
+                return merged.getAbsolutePath();
+            }
+        });
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * CopyModeBenchmark.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.gnome.split.config.Configuration;
+import org.gnome.split.core.io.CopyMode;
+import org.gnome.split.core.utils.Algorithm;
+
+/**
+ * Compare the throughput of the {@link CopyMode copy modes} by splitting and
+ * merging files of several sizes. The files stay in the page cache after the
+ * first run, so this measures the cost of the copy itself, not the speed of
+ * the disk.
+ * 
+ * Usage: <code>CopyModeBenchmark [directory] [size in MB...]</code>
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class CopyModeBenchmark
+{
+    /**
+     * Number of measured runs for each case.
+     */
+    private static final int RUNS = 5;
+
+    /**
+     * Names of the copy modes, indexed by their value.
+     */
+    private static final String[] MODES = new String[] {
+        "stream", "transfer", "mapped"
+    };
+
+    private CopyModeBenchmark() {
+        // No instantiation from outside
+    }
+
+    public static void main(String[] args) throws Exception {
+        long[] sizes = new long[] {
+            1, 16, 256
+        };
+
+        if (args.length > 0) {
+            System.setProperty(BenchmarkFiles.DIRECTORY_PROPERTY, args[0]);
+        }
+
+        if (args.length > 1) {
+            sizes = new long[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                sizes[i - 1] = Long.parseLong(args[i]);
+            }
+        }
+
+        File directory = BenchmarkFiles.createDirectory("copy-modes");
+        Configuration config = BenchmarkFiles.createConfiguration(directory, false);
+        QuietListener listener = new QuietListener();
+
+        System.out.println(String.format("%8s %10s %14s %14s", "size", "mode", "split (MB/s)", "merge (MB/s)"));
+
+        for (long size : sizes) {
+            File file = new File(directory, "file.bin");
+            BenchmarkFiles.createFile(file, size * 1024 * 1024);
+
+            for (int mode = 0; mode < MODES.length; mode++) {
+                config.COPY_MODE = mode;
+
+                // First run to warm up the JVM and the page cache
+                run(config, listener, file, directory);
+
+                double[] split = new double[RUNS];
+                double[] merge = new double[RUNS];
+                for (int i = 0; i < RUNS; i++) {
+                    long[] times = run(config, listener, file, directory);
+                    split[i] = throughput(file.length(), times[0]);
+                    merge[i] = throughput(file.length(), times[1]);
+                }
+
+                System.out.println(String.format("%6dMB %10s %14.1f %14.1f", size, MODES[mode], median(split),
+                        median(merge)));
+            }
+
+            file.delete();
+        }
+
+        BenchmarkFiles.clean(directory);
+    }
+
+    /**
+     * Split the <code>file</code> in 8 parts and merge them back. It returns
+     * the time taken by the split and the merge, in nanoseconds.
+     */
+    private static long[] run(Configuration config, QuietListener listener, File file, File directory)
+            throws IOException {
+        File parts = new File(directory, "parts");
+        BenchmarkFiles.clean(parts);
+        parts.mkdirs();
+
+        long start = System.nanoTime();
+        listener.execute(BenchmarkFiles.createSplitter(config, listener, file, parts, Algorithm.GENERIC, 8));
+        long split = System.nanoTime() - start;
+
+        File merged = new File(directory, "merged.bin");
+        merged.delete();
+
+        start = System.nanoTime();
+        listener.execute(BenchmarkFiles.createMerger(config, listener, parts, Algorithm.GENERIC, merged));
+        long merge = System.nanoTime() - start;
+
+        if (merged.length() != file.length()) {
+            throw new IOException("The merged file does not have the right size");
+        }
+
+        return new long[] {
+            split, merge
+        };
+    }
+
+    private static double throughput(long length, long nanos) {
+        return (length / (1024.0 * 1024.0)) / (nanos / 1e9);
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
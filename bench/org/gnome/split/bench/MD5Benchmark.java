@@ -0,0 +1,109 @@
+/*
+ * MD5Benchmark.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.gnome.split.core.utils.MD5Hasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measure the time needed to calculate the MD5 sum of a generated file, and
+ * of the same amount of data already in memory (which is what the engines
+ * do while copying), for several buffer sizes.
+ * 
+ * @author Guillaume Mazoyer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MD5Benchmark
+{
+    @Param({
+            "4096", "65536", "1048576", "16777216"
+    })
+    public int bufferSize;
+
+    @Param({
+        "64"
+    })
+    public long fileSize;
+
+    private File directory;
+
+    private File file;
+
+    private byte[] data;
+
+    private MD5Hasher hasher;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        directory = BenchmarkFiles.createDirectory("md5");
+        file = new File(directory, "file.bin");
+        BenchmarkFiles.createFile(file, fileSize * 1024 * 1024);
+
+        data = new byte[bufferSize];
+        new Random(42).nextBytes(data);
+
+        hasher = new MD5Hasher(bufferSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void removeFiles() {
+        BenchmarkFiles.clean(directory);
+    }
+
+    @Benchmark
+    public String hashFile() {
+        return hasher.hashToString(file);
+    }
+
+    @Benchmark
+    public String hashMemory() {
+        long length = fileSize * 1024 * 1024;
+
+        hasher.reset();
+        for (long read = 0; read < length; read += bufferSize) {
+            hasher.update(data, 0, (int) Math.min(bufferSize, length - read));
+        }
+
+        return hasher.digestToString();
+    }
+}
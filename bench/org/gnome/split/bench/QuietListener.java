@@ -0,0 +1,141 @@
+/*
+ * QuietListener.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.bench;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.gnome.split.core.Engine;
+import org.gnome.split.core.EngineListener;
+
+/**
+ * A listener which does not display anything, it only keeps the error
+ * reported by an engine so the benchmarks can fail on it.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public class QuietListener implements EngineListener
+{
+    private Engine engine;
+
+    private List<String> list;
+
+    private Exception error;
+
+    /**
+     * Run the <code>engine</code> in the current thread and fail if it
+     * reported an error.
+     */
+    public void execute(Engine engine) throws IOException {
+        this.setEngine(engine);
+        engine.run();
+
+        if (error != null) {
+            throw new IOException(error);
+        }
+    }
+
+    @Override
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+        this.error = null;
+    }
+
+    @Override
+    public Engine getEngine() {
+        return engine;
+    }
+
+    @Override
+    public void engineSpeedChanged(long speed) {
+
+    }
+
+    @Override
+    public void enginePartCreated(String filename) {
+
+    }
+
+    @Override
+    public void enginePartWritten(String filename) {
+
+    }
+
+    @Override
+    public void enginePartRead(String filename) {
+
+    }
+
+    @Override
+    public void engineMD5SumStarted() {
+
+    }
+
+    @Override
+    public void engineMD5SumEnded() {
+
+    }
+
+    @Override
+    public void engineReady() {
+
+    }
+
+    @Override
+    public void engineRunning() {
+
+    }
+
+    @Override
+    public void engineSuspended() {
+
+    }
+
+    @Override
+    public void engineEnded() {
+
+    }
+
+    @Override
+    public void engineStopped() {
+
+    }
+
+    @Override
+    public void engineError(Exception exception) {
+        error = exception;
+    }
+
+    @Override
+    public void engineDone(long done, long total) {
+
+    }
+
+    @Override
+    public void engineFilesList(List<String> list) {
+        this.list = list;
+    }
+
+    @Override
+    public List<String> getFilesList() {
+        return list;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * SplitBenchmark.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.gnome.split.config.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measure the time needed to split a generated file in 8 parts, for each
+ * algorithm and several buffer sizes. The size of the file (in MB), the copy
+ * mode, the number of worker threads and the use of MD5 sums can be changed
+ * using the JMH <code>-p</code> option.
+ * 
+ * @author Guillaume Mazoyer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SplitBenchmark
+{
+    @Param({
+            "0", "1", "2", "3", "4", "5", "6"
+    })
+    public int algorithm;
+
+    @Param({
+            "4096", "65536", "1048576", "16777216"
+    })
+    public int bufferSize;
+
+    @Param({
+        "64"
+    })
+    public long fileSize;
+
+    @Param({
+        "0"
+    })
+    public int copyMode;
+
+    @Param({
+        "1"
+    })
+    public int workerThreads;
+
+    @Param({
+        "false"
+    })
+    public boolean hash;
+
+    private File directory;
+
+    private File file;
+
+    private File parts;
+
+    private Configuration config;
+
+    private QuietListener listener;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        directory = BenchmarkFiles.createDirectory("split");
+        file = new File(directory, "file.bin");
+        parts = new File(directory, "parts");
+
+        config = BenchmarkFiles.createConfiguration(directory, hash);
+        config.BUFFER_SIZE = bufferSize;
+        config.COPY_MODE = copyMode;
+        config.WORKER_THREADS = workerThreads;
+        listener = new QuietListener();
+
+        BenchmarkFiles.createFile(file, fileSize * 1024 * 1024);
+    }
+
+    @Setup(Level.Invocation)
+    public void removeParts() {
+        // Each split starts without any part
+        BenchmarkFiles.clean(parts);
+        parts.mkdirs();
+    }
+
+    @TearDown(Level.Trial)
+    public void removeFiles() {
+        BenchmarkFiles.clean(directory);
+    }
+
+    @Benchmark
+    public void split() throws IOException {
+        listener.execute(BenchmarkFiles.createSplitter(config, listener, file, parts, algorithm, 8));
+    }
+}
@@ -38,6 +38,7 @@ import org.gnome.notify.Notify;
 import org.gnome.split.config.Configuration;
 import org.gnome.split.config.Constants;
 import org.gnome.split.core.EngineListener;
+import org.gnome.split.core.scheduler.JobScheduler;
 import org.gnome.split.core.utils.ShutdownHandler;
 import org.gnome.split.core.utils.UncaughtExceptionLogger;
 import org.gnome.split.gtk.DefaultEngineListener;
@@ -88,6 +89,11 @@ public final class GnomeSplit
      */
     public static EngineListener engine;
 
+    /**
+     * Scheduler running the splits and merges.
+     */
+    public static JobScheduler scheduler;
+
     private GnomeSplit() {
         // No instantiation from outside
     }
@@ -100,6 +106,9 @@ public final class GnomeSplit
             // Load constants and preferences
             Constants.load();
             config = new Configuration();
+
+            // Jobs scheduler using the preferences
+            scheduler = new JobScheduler(config);
         } catch (IOException e) {
             e.printStackTrace();
             exit(1);
@@ -261,7 +270,7 @@ public final class GnomeSplit
         boolean quit = true;
 
         // An action is running
-        if (!config.DO_NOT_ASK_QUIT && (engine.getEngine() != null)) {
+        if (!config.DO_NOT_ASK_QUIT && scheduler.isBusy()) {
             // Show a question to the user
             QuestionDialog dialog = new QuestionDialog(ui, _("Quit GNOME Split."),
                     _("An action is currently being performed. Do you really want to quit GNOME Split?"));
@@ -0,0 +1,173 @@
+/*
+ * BatchEngineListener.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.gnome.split.core.Engine;
+import org.gnome.split.core.EngineListener;
+
+/**
+ * Listener used in batch mode. Nothing is displayed while a job is running,
+ * the listener only keeps what the {@link BatchRunner runner} needs to
+ * report once the job is done.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class BatchEngineListener implements EngineListener
+{
+    /**
+     * The current engine (job).
+     */
+    private Engine engine;
+
+    /**
+     * List of files that have been created.
+     */
+    private List<String> files;
+
+    /**
+     * First error notified by the engine.
+     */
+    private Exception error;
+
+    /**
+     * If the engine has finished its work.
+     */
+    private boolean ended;
+
+    public BatchEngineListener() {
+        this.reset();
+    }
+
+    /**
+     * Forget everything about the previous job.
+     */
+    public void reset() {
+        this.engine = null;
+        this.files = new ArrayList<String>();
+        this.error = null;
+        this.ended = false;
+    }
+
+    /**
+     * Get the first error notified by the engine, or <code>null</code>.
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * Tell if the engine has finished its work successfully.
+     */
+    public boolean hasEnded() {
+        return ended && (error == null);
+    }
+
+    @Override
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public Engine getEngine() {
+        return engine;
+    }
+
+    @Override
+    public void engineSpeedChanged(long speed) {
+        // Only the average speed is reported
+    }
+
+    @Override
+    public void enginePartCreated(String filename) {
+        // Nothing to report
+    }
+
+    @Override
+    public void enginePartWritten(String filename) {
+        // Nothing to report
+    }
+
+    @Override
+    public void enginePartRead(String filename) {
+        // Nothing to report
+    }
+
+    @Override
+    public void engineMD5SumStarted() {
+        // Nothing to report
+    }
+
+    @Override
+    public void engineMD5SumEnded() {
+        // Nothing to report
+    }
+
+    @Override
+    public void engineReady() {
+        // Nothing to report
+    }
+
+    @Override
+    public void engineRunning() {
+        // Nothing to report
+    }
+
+    @Override
+    public void engineSuspended() {
+        // Nothing to report
+    }
+
+    @Override
+    public void engineEnded() {
+        ended = true;
+    }
+
+    @Override
+    public void engineStopped() {
+        ended = false;
+    }
+
+    @Override
+    public void engineError(Exception exception) {
+        // Keep the first error, the next ones are consequences
+        if (error == null) {
+            error = exception;
+        }
+    }
+
+    @Override
+    public void engineDone(long done, long total) {
+        // Nothing to report
+    }
+
+    @Override
+    public void engineFilesList(List<String> list) {
+        files = list;
+    }
+
+    @Override
+    public List<String> getFilesList() {
+        return files;
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * BatchRunner.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.batch;
+
+import static java.lang.System.exit;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.List;
+import java.util.Locale;
+import java.util.SortedMap;
+
+import org.gnome.split.config.Configuration;
+import org.gnome.split.config.Constants;
+import org.gnome.split.core.Engine;
+import org.gnome.split.core.exception.EngineException;
+import org.gnome.split.core.exception.MD5Exception;
+import org.gnome.split.core.metrics.EngineMetrics;
+import org.gnome.split.core.metrics.LatencyHistogram;
+import org.gnome.split.core.utils.ShutdownHandler;
+import org.gnome.split.core.utils.UncaughtExceptionLogger;
+
+/**
+ * Entry point of the batch mode (<code>gnome-split --batch FILE</code>),
+ * which runs the jobs listed in a {@link JobFile file} one after the other
+ * and reports their throughput on the standard output (or on the error
+ * output if a job writes its data on the standard output). It does not use
+ * the user interface, so no GTK+ class is loaded.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class BatchRunner
+{
+    /**
+     * Units used to display sizes.
+     */
+    private static final String[] UNITS = new String[] {
+            "B", "KiB", "MiB", "GiB", "TiB"
+    };
+
+    /**
+     * Configuration given to the engines.
+     */
+    private Configuration config;
+
+    /**
+     * Listener given to the engines.
+     */
+    private BatchEngineListener listener;
+
+    /**
+     * Number of bytes read by the successful jobs.
+     */
+    private long bytes;
+
+    /**
+     * Time spent by the successful jobs, in nanoseconds.
+     */
+    private long time;
+
+    /**
+     * Report where the time of each job has been spent.
+     */
+    private boolean statistics;
+
+    /**
+     * Where the results of the jobs are reported.
+     */
+    private PrintStream report;
+
+    public BatchRunner(Configuration config, boolean statistics) {
+        this.config = config;
+        this.listener = new BatchEngineListener();
+        this.statistics = statistics;
+        this.report = System.out;
+    }
+
+    /**
+     * Run the <code>jobs</code> and return the number of jobs which failed.
+     */
+    public int run(List<Job> jobs) {
+        int failed = 0;
+
+        for (Job job : jobs) {
+            if (job.writesOutput()) {
+                // Do not mix the report with the merged data
+                report = System.err;
+            }
+        }
+
+        for (int i = 0; i < jobs.size(); i++) {
+            Job job = jobs.get(i);
+            String name = "[" + (i + 1) + "/" + jobs.size() + "] " + job;
+
+            if (!this.run(job, name)) {
+                failed++;
+            }
+        }
+
+        // Summary of all the jobs
+        report.println(jobs.size() + " jobs, " + failed + " failed: " + this.formatThroughput(bytes, time));
+
+        return failed;
+    }
+
+    /**
+     * Run a single <code>job</code> and report its result using its
+     * <code>name</code>.
+     */
+    private boolean run(Job job, String name) {
+        listener.reset();
+
+        if (!job.readsInput() && !job.getFile().isFile()) {
+            System.err.println(name + ": file not found (line " + job.getLine() + ")");
+            return false;
+        }
+
+        Engine engine = job.createEngine(config, listener);
+        if (engine == null) {
+            String reason = job.readsInput() ? "the algorithm can't split a stream" : "unknown file format";
+            System.err.println(name + ": " + reason + " (line " + job.getLine() + ")");
+            return false;
+        }
+
+        long start = System.nanoTime();
+        if (listener.getError() == null) {
+            // The headers of the chunks are valid, merge them
+            listener.setEngine(engine);
+            engine.run();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        if (!listener.hasEnded()) {
+            System.err.println(name + ": " + this.formatError(listener.getError()));
+            return false;
+        }
+
+        // Report what has been done
+        List<String> files = listener.getFilesList();
+        String created = (files.size() == 1) ? files.get(0) : (files.size() + " files");
+        String done = job.writesOutput() ? "wrote the standard output" : ("created " + created);
+        report.println(name + ": " + done + ", " + this.formatThroughput(engine.getFileLength(), elapsed));
+
+        if (statistics) {
+            this.printStatistics(engine.getMetrics());
+        }
+
+        bytes += engine.getFileLength();
+        time += elapsed;
+
+        return true;
+    }
+
+    /**
+     * Print the time spent in each phase, the time needed to handle the
+     * parts and the latency of the read and write calls, using the
+     * <code>metrics</code> of a job.
+     */
+    private void printStatistics(EngineMetrics metrics) {
+        StringBuilder phases = new StringBuilder("    phases:");
+        for (int i = 0; i < EngineMetrics.getPhaseCount(); i++) {
+            phases.append((i > 0) ? ", " : " ").append(EngineMetrics.getPhaseName(i)).append(" ");
+            phases.append(this.formatDuration(metrics.getPhaseTime(i)));
+        }
+        report.println(phases);
+
+        SortedMap<Integer, Long> parts = metrics.getPartTimes();
+        if (!parts.isEmpty()) {
+            int slowest = parts.firstKey();
+            long sum = 0;
+            long min = Long.MAX_VALUE;
+            for (Integer part : parts.keySet()) {
+                long duration = parts.get(part);
+                sum += duration;
+                min = Math.min(min, duration);
+                if (duration > parts.get(slowest)) {
+                    slowest = part;
+                }
+            }
+
+            report.println("    parts: " + parts.size() + ", fastest " + this.formatDuration(min) + ", average "
+                    + this.formatDuration(sum / parts.size()) + ", slowest " + this.formatDuration(parts.get(slowest))
+                    + " (part " + slowest + ")");
+        }
+
+        report.println("    reads: " + this.formatLatency(metrics.getReadLatency()) + "; writes: "
+                + this.formatLatency(metrics.getWriteLatency()));
+    }
+
+    /**
+     * Get a message giving the number of calls in a <code>histogram</code>
+     * and their median and 99th percentile latencies.
+     */
+    private String formatLatency(LatencyHistogram histogram) {
+        long count = histogram.getCount();
+        if (count == 0) {
+            return "none";
+        }
+
+        return count + " calls, p50 < " + this.formatDuration(histogram.getPercentile(50)) + ", p99 < "
+                + this.formatDuration(histogram.getPercentile(99));
+    }
+
+    /**
+     * Get a readable representation of a <code>duration</code> in
+     * nanoseconds.
+     */
+    private String formatDuration(long duration) {
+        if (duration == Long.MAX_VALUE) {
+            return "inf";
+        } else if (duration < 1000) {
+            return duration + " ns";
+        } else if (duration < 1000000) {
+            return String.format(Locale.ROOT, "%.1f us", duration / 1e3);
+        } else if (duration < 1000000000) {
+            return String.format(Locale.ROOT, "%.1f ms", duration / 1e6);
+        }
+
+        return String.format(Locale.ROOT, "%.2f s", duration / 1e9);
+    }
+
+    /**
+     * Get a message describing an <code>error</code>.
+     */
+    private String formatError(Exception error) {
+        if (error == null) {
+            return "stopped";
+        }
+
+        if ((error instanceof EngineException) && (((EngineException) error).getExceptionMessage() != null)) {
+            StringBuilder message = new StringBuilder();
+            message.append(((EngineException) error).getExceptionMessage().getMessage());
+
+            if (error instanceof MD5Exception) {
+                // Tell which chunks do not have the right MD5 sum
+                List<String> chunks = ((MD5Exception) error).getChunks();
+                if (!chunks.isEmpty()) {
+                    message.append(" Corrupted chunks: ");
+                    for (int i = 0; i < chunks.size(); i++) {
+                        if (i > 0) {
+                            message.append(", ");
+                        }
+                        message.append(chunks.get(i));
+                    }
+                    message.append(".");
+                }
+            }
+
+            return message.toString();
+        }
+
+        return (error.getMessage() != null) ? error.getMessage() : error.toString();
+    }
+
+    /**
+     * Get a message giving the amount of data handled in a time, and the
+     * resulting speed.
+     */
+    private String formatThroughput(long length, long elapsed) {
+        double seconds = elapsed / 1e9;
+        double speed = (seconds > 0) ? (length / seconds) : 0;
+
+        return String.format(Locale.ROOT, "%s in %.2f s (%s/s)", this.formatSize(length), seconds,
+                this.formatSize(speed));
+    }
+
+    /**
+     * Get a readable representation of a <code>size</code> in bytes.
+     */
+    private String formatSize(double size) {
+        int unit = 0;
+        while ((size >= 1024) && (unit < (UNITS.length - 1))) {
+            size /= 1024;
+            unit++;
+        }
+
+        return String.format(Locale.ROOT, "%.1f %s", size, UNITS[unit]);
+    }
+
+    /**
+     * Batch mode entry point. The arguments are an optional
+     * <code>--stats</code> option and the file listing the jobs to run, or
+     * <code>-</code> to read them from the standard input.
+     */
+    public static void main(String[] args) {
+        boolean statistics = (args.length == 2) && args[0].equals("--stats");
+        if ((args.length != 1) && !statistics) {
+            System.err.println("Usage: gnome-split --batch [--stats] FILE");
+            exit(2);
+        }
+
+        String file = args[args.length - 1];
+
+        // Initialize uncaught exception handler
+        new UncaughtExceptionLogger();
+
+        // Start kill signals handler
+        Runtime.getRuntime().addShutdownHook(new ShutdownHandler());
+
+        Configuration config = null;
+        List<Job> jobs = null;
+        try {
+            // Load the preferences without GTK+
+            Constants.loadHeadless();
+            config = new Configuration();
+
+            // Read all the jobs before running any of them
+            Reader reader = file.equals("-") ? new InputStreamReader(System.in) : new FileReader(file);
+            try {
+                jobs = JobFile.read(reader, file, config.DEFAULT_ALGORITHM);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            exit(2);
+        }
+
+        int failed = new BatchRunner(config, statistics).run(jobs);
+
+        exit((failed == 0) ? 0 : 1);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Job.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.batch;
+
+import java.io.File;
+
+import org.gnome.split.config.Configuration;
+import org.gnome.split.core.Engine;
+import org.gnome.split.core.EngineListener;
+
+/**
+ * An action (split or merge) read from a batch file.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public abstract class Job
+{
+    /**
+     * Line of the batch file which describes this job.
+     */
+    private int line;
+
+    protected Job(int line) {
+        this.line = line;
+    }
+
+    /**
+     * Get the line of the batch file which describes this job.
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Get the file to read (the file to split or the first chunk to merge).
+     */
+    public abstract File getFile();
+
+    /**
+     * Tell if the job reads its data from the standard input instead of its
+     * file.
+     */
+    public boolean readsInput() {
+        return false;
+    }
+
+    /**
+     * Tell if the job writes its data on the standard output instead of a
+     * file.
+     */
+    public boolean writesOutput() {
+        return false;
+    }
+
+    /**
+     * Create the {@link Engine engine} which performs this job, using the
+     * <code>config</code> and notifying the <code>listener</code>.
+     */
+    public abstract Engine createEngine(Configuration config, EngineListener listener);
+}
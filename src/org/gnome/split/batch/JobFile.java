@@ -0,0 +1,223 @@
+/*
+ * JobFile.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.batch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reader of the files which list the jobs to run in batch mode. Each line
+ * describes one job:
+ * 
+ * <pre>
+ * split FILE SIZE [ALGORITHM [DIRECTORY]]
+ * merge CHUNK [DESTINATION]
+ * </pre>
+ * 
+ * The SIZE of the chunks is given in bytes, with an optional K, M or G
+ * suffix. The ALGORITHM is a name (generic, gnome-split, xtremsplit, kfk,
+ * yoyocut, cdc or compressed) or its number. Paths which contain spaces must
+ * be quoted. Empty lines and lines starting with a <code>#</code> are
+ * ignored. If FILE is <code>-</code>, the data is read from the standard
+ * input (by one job at most) and the chunks are named <code>stdin</code>.
+ * If DESTINATION is <code>-</code>, the merged data is written on the
+ * standard output.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class JobFile
+{
+    /**
+     * Names of the algorithms, indexed by their number.
+     */
+    private static final String[] ALGORITHMS = new String[] {
+            "generic", "gnome-split", "xtremsplit", "kfk", "yoyocut", "cdc", "compressed"
+    };
+
+    private JobFile() {
+        // No instantiation from outside
+    }
+
+    /**
+     * Read the jobs from the <code>input</code>. The <code>name</code> of
+     * the input is used in the error messages. The split jobs which do not
+     * specify an algorithm use the <code>algorithm</code> given here.
+     */
+    public static List<Job> read(Reader input, String name, int algorithm) throws IOException {
+        BufferedReader reader = new BufferedReader(input);
+        List<Job> jobs = new ArrayList<Job>();
+
+        // The standard input can only be read once
+        boolean stdin = name.equals("-");
+
+        String text;
+        int line = 0;
+        while ((text = reader.readLine()) != null) {
+            line++;
+
+            List<String> words = split(text, name, line);
+            if (words.isEmpty()) {
+                // Nothing to do on this line
+                continue;
+            }
+
+            String action = words.get(0);
+            int count = words.size();
+
+            if (action.equals("split") && (count >= 3) && (count <= 5)) {
+                long size = parseSize(words.get(2), name, line);
+                int used = (count > 3) ? parseAlgorithm(words.get(3), name, line) : algorithm;
+                File directory = (count > 4) ? new File(words.get(4)) : null;
+
+                if (words.get(1).equals("-")) {
+                    if (stdin) {
+                        throw error(name, line, "the standard input is already read");
+                    }
+                    stdin = true;
+                }
+
+                jobs.add(new SplitJob(line, new File(words.get(1)), size, used, directory));
+            } else if (action.equals("merge") && (count >= 2) && (count <= 3)) {
+                File destination = (count > 2) ? new File(words.get(2)) : null;
+
+                jobs.add(new MergeJob(line, new File(words.get(1)), destination));
+            } else {
+                throw error(name, line, "invalid job \"" + text.trim() + "\"");
+            }
+        }
+
+        return jobs;
+    }
+
+    /**
+     * Split a line into words, handling quotes and comments.
+     */
+    private static List<String> split(String text, String name, int line) throws IOException {
+        List<String> words = new ArrayList<String>();
+
+        String trimmed = text.trim();
+        if (trimmed.startsWith("#")) {
+            // Comment line
+            return words;
+        }
+
+        StringBuilder word = null;
+        boolean quoted = false;
+
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+
+            if (c == '"') {
+                // Start or end of a quoted word (which may be empty)
+                quoted = !quoted;
+                if (word == null) {
+                    word = new StringBuilder();
+                }
+            } else if (!quoted && Character.isWhitespace(c)) {
+                // End of the current word
+                if (word != null) {
+                    words.add(word.toString());
+                    word = null;
+                }
+            } else {
+                if (word == null) {
+                    word = new StringBuilder();
+                }
+                word.append(c);
+            }
+        }
+
+        if (quoted) {
+            throw error(name, line, "missing closing quote");
+        }
+
+        if (word != null) {
+            words.add(word.toString());
+        }
+
+        return words;
+    }
+
+    /**
+     * Parse a size with an optional K, M or G suffix.
+     */
+    private static long parseSize(String word, String name, int line) throws IOException {
+        if (word.isEmpty()) {
+            throw error(name, line, "invalid size \"\"");
+        }
+
+        long unit = 1;
+        String number = word;
+
+        switch (Character.toUpperCase(word.charAt(word.length() - 1))) {
+        case 'K':
+            unit = 1024L;
+            break;
+        case 'M':
+            unit = 1024L * 1024L;
+            break;
+        case 'G':
+            unit = 1024L * 1024L * 1024L;
+            break;
+        }
+
+        if (unit != 1) {
+            number = word.substring(0, word.length() - 1);
+        }
+
+        long size;
+        try {
+            size = Long.parseLong(number) * unit;
+        } catch (NumberFormatException e) {
+            size = -1;
+        }
+
+        if (size <= 0) {
+            throw error(name, line, "invalid size \"" + word + "\"");
+        }
+
+        return size;
+    }
+
+    /**
+     * Parse an algorithm given by its name or its number.
+     */
+    private static int parseAlgorithm(String word, String name, int line) throws IOException {
+        for (int i = 0; i < ALGORITHMS.length; i++) {
+            if (ALGORITHMS[i].equalsIgnoreCase(word) || String.valueOf(i).equals(word)) {
+                return i;
+            }
+        }
+
+        throw error(name, line, "unknown algorithm \"" + word + "\"");
+    }
+
+    /**
+     * Build the exception for an error at a <code>line</code>.
+     */
+    private static IOException error(String name, int line, String message) {
+        return new IOException(name + ":" + line + ": " + message);
+    }
+}
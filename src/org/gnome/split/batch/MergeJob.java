@@ -0,0 +1,99 @@
+/*
+ * MergeJob.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.batch;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+
+import org.gnome.split.config.Configuration;
+import org.gnome.split.core.Engine;
+import org.gnome.split.core.EngineFactory;
+import org.gnome.split.core.EngineListener;
+import org.gnome.split.core.model.MergeModel;
+
+/**
+ * A job which merges chunks.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class MergeJob extends Job implements MergeModel
+{
+    /**
+     * First chunk to merge.
+     */
+    private File file;
+
+    /**
+     * File to create, or <code>null</code> to use the name stored in the
+     * chunks.
+     */
+    private File destination;
+
+    /**
+     * Set if the data is written on the standard output.
+     */
+    private boolean output;
+
+    public MergeJob(int line, File file, File destination) {
+        super(line);
+        this.file = file.getAbsoluteFile();
+        this.output = (destination != null) && destination.getPath().equals("-");
+        this.destination = ((destination != null) && !output) ? destination.getAbsoluteFile() : null;
+    }
+
+    @Override
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public boolean writesOutput() {
+        return output;
+    }
+
+    @Override
+    public File getDirectory() {
+        return (destination != null) ? destination.getParentFile() : file.getParentFile();
+    }
+
+    @Override
+    public String getDestination() {
+        // The engine creates the file next to the chunks if there is no name
+        return (destination != null) ? destination.getPath() : null;
+    }
+
+    @Override
+    public Engine createEngine(Configuration config, EngineListener listener) {
+        if (output) {
+            // Write the data as it is merged
+            return EngineFactory.createMergeEngine(config, listener, this,
+                    new FileOutputStream(FileDescriptor.out).getChannel());
+        }
+
+        return EngineFactory.createMergeEngine(config, listener, this);
+    }
+
+    @Override
+    public String toString() {
+        return "merge " + file.getPath();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * SplitJob.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.batch;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+
+import org.gnome.split.config.Configuration;
+import org.gnome.split.core.Engine;
+import org.gnome.split.core.EngineFactory;
+import org.gnome.split.core.EngineListener;
+import org.gnome.split.core.model.SplitModel;
+
+/**
+ * A job which splits a file.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class SplitJob extends Job implements SplitModel
+{
+    /**
+     * Name given to the data read from the standard input.
+     */
+    private static final String INPUT_NAME = "stdin";
+
+    /**
+     * File to split.
+     */
+    private File file;
+
+    /**
+     * Set if the data is read from the standard input.
+     */
+    private boolean input;
+
+    /**
+     * Maximum size of each chunk.
+     */
+    private long size;
+
+    /**
+     * Algorithm to use.
+     */
+    private int algorithm;
+
+    /**
+     * Directory where the chunks are created.
+     */
+    private File directory;
+
+    public SplitJob(int line, File file, long size, int algorithm, File directory) {
+        super(line);
+        this.input = file.getPath().equals("-");
+        this.file = input ? new File(INPUT_NAME).getAbsoluteFile() : file.getAbsoluteFile();
+        this.size = size;
+        this.algorithm = algorithm;
+        this.directory = (directory != null) ? directory.getAbsoluteFile() : this.file.getParentFile();
+    }
+
+    @Override
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public boolean readsInput() {
+        return input;
+    }
+
+    @Override
+    public File getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public String getDestination() {
+        return directory.getPath() + File.separator + file.getName();
+    }
+
+    @Override
+    public long getMaxSize() {
+        return size;
+    }
+
+    @Override
+    public int getAlgorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public Engine createEngine(Configuration config, EngineListener listener) {
+        if (input) {
+            // Split the data as it comes
+            return EngineFactory.createSplitEngine(config, listener, this,
+                    new FileInputStream(FileDescriptor.in).getChannel());
+        }
+
+        return EngineFactory.createSplitEngine(config, listener, this);
+    }
+
+    @Override
+    public String toString() {
+        return "split " + (input ? "-" : file.getPath());
+    }
+}
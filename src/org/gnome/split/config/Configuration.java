@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
 
+import org.gnome.split.core.io.CopyMode;
 import org.gnome.split.core.io.GFileInputStream;
 import org.gnome.split.core.io.GFileWriter;
 
@@ -148,17 +149,77 @@ public final class Configuration
      */
     public int BUFFER_SIZE;
 
+    /**
+     * The way data is copied from a file to another one (see
+     * {@link CopyMode}). Like the buffer size, this is only meant to be
+     * changed by power users.
+     */
+    public int COPY_MODE;
+
+    /**
+     * Number of threads which can write (or read) parts at the same time.
+     * With only one thread, the parts are handled one after the other. This
+     * is also a setting for power users.
+     */
+    public int WORKER_THREADS;
+
+    /**
+     * Number of jobs which can use the same disk at the same time. Jobs on
+     * different disks always run at the same time.
+     */
+    public int JOBS_PER_DEVICE;
+
+    /**
+     * Keep a journal of the parts which have been written, so an interrupted
+     * job continues where it stopped instead of starting again.
+     */
+    public boolean RESUME_JOBS;
+
+    /**
+     * Only write the data of a split which differs from the chunks already
+     * in the destination, so splitting the same file again only costs the
+     * size of its changes.
+     */
+    public boolean INCREMENTAL_SPLIT;
+
+    /**
+     * Minimum size of the chunks created by the content defined algorithm,
+     * in bytes. The average size is the size chosen for the split, and 0
+     * means a quarter of it.
+     */
+    public long CHUNK_MIN_SIZE;
+
+    /**
+     * Maximum size of the chunks created by the content defined algorithm,
+     * in bytes. 0 means four times the size chosen for the split.
+     */
+    public long CHUNK_MAX_SIZE;
+
+    /**
+     * Level used by the compressed algorithm, from 0 (no compression) to 9
+     * (best compression).
+     */
+    public int COMPRESSION_LEVEL;
+
     /**
      * Private constructor can't instantiate Configuration in other class.<br>
      * Check for preferences file and load it.
      */
     public Configuration() throws IOException {
-        configuration = new File(Constants.CONFIG_FILE);
+        this(new File(Constants.CONFIG_FILE));
+    }
+
+    /**
+     * Load the preferences from the <code>file</code>. If the file does not
+     * exist, it is created with the default preferences.
+     */
+    public Configuration(File file) throws IOException {
+        configuration = file;
 
         // File not found
         if (!configuration.exists()) {
             // Check if path exists and create it if necessary
-            File path = new File(Constants.CONFIG_FOLDER);
+            File path = configuration.getAbsoluteFile().getParentFile();
             if (!path.exists()) {
                 path.mkdirs();
             }
@@ -211,6 +272,14 @@ public final class Configuration
             writer.write("DontAskToQuit     = false\n");
             writer.write("CloseBehavior     = 0\n");
             writer.write("BufferSize        = 1048576\n");
+            writer.write("CopyMode          = 0\n");
+            writer.write("WorkerThreads     = 1\n");
+            writer.write("JobsPerDevice     = 1\n");
+            writer.write("ResumeJobs        = false\n");
+            writer.write("IncrementalSplit  = false\n");
+            writer.write("ChunkMinSize      = 0\n");
+            writer.write("ChunkMaxSize      = 0\n");
+            writer.write("CompressionLevel  = 6\n");
         } catch (IOException e) {
             e.printStackTrace();
         } finally {
@@ -269,6 +338,22 @@ public final class Configuration
             SHOW_SIZE_DETAILS = Boolean.parseBoolean(preferences.getProperty("ShowSizeDetails", "false"));
             DO_NOT_ASK_QUIT = Boolean.parseBoolean(preferences.getProperty("DontAskToQuit", "false"));
             BUFFER_SIZE = Integer.parseInt(preferences.getProperty("BufferSize", "1048576"));
+            COPY_MODE = Integer.parseInt(preferences.getProperty("CopyMode", "0"));
+
+            // Fallback to the default copy mode if an unknown one is set
+            if (!CopyMode.isValid(COPY_MODE)) {
+                COPY_MODE = CopyMode.STREAM;
+            }
+
+            // At least one thread is needed to do the job
+            WORKER_THREADS = Math.max(1, Integer.parseInt(preferences.getProperty("WorkerThreads", "1")));
+            JOBS_PER_DEVICE = Math.max(1, Integer.parseInt(preferences.getProperty("JobsPerDevice", "1")));
+            RESUME_JOBS = Boolean.parseBoolean(preferences.getProperty("ResumeJobs", "false"));
+            INCREMENTAL_SPLIT = Boolean.parseBoolean(preferences.getProperty("IncrementalSplit", "false"));
+            CHUNK_MIN_SIZE = Math.max(0, Long.parseLong(preferences.getProperty("ChunkMinSize", "0")));
+            CHUNK_MAX_SIZE = Math.max(0, Long.parseLong(preferences.getProperty("ChunkMaxSize", "0")));
+            COMPRESSION_LEVEL = Math.max(0,
+                    Math.min(9, Integer.parseInt(preferences.getProperty("CompressionLevel", "6"))));
         } catch (IOException e) {
             e.printStackTrace();
             System.exit(1);
@@ -314,6 +399,14 @@ public final class Configuration
             writer.write("ShowSizeDetails   = " + SHOW_SIZE_DETAILS + "\n");
             writer.write("DontAskToQuit     = " + DO_NOT_ASK_QUIT + "\n");
             writer.write("BufferSize        = " + BUFFER_SIZE + "\n");
+            writer.write("CopyMode          = " + COPY_MODE + "\n");
+            writer.write("WorkerThreads     = " + WORKER_THREADS + "\n");
+            writer.write("JobsPerDevice     = " + JOBS_PER_DEVICE + "\n");
+            writer.write("ResumeJobs        = " + RESUME_JOBS + "\n");
+            writer.write("IncrementalSplit  = " + INCREMENTAL_SPLIT + "\n");
+            writer.write("ChunkMinSize      = " + CHUNK_MIN_SIZE + "\n");
+            writer.write("ChunkMaxSize      = " + CHUNK_MAX_SIZE + "\n");
+            writer.write("CompressionLevel  = " + COMPRESSION_LEVEL + "\n");
         } catch (IOException e) {
             e.printStackTrace();
         } finally {
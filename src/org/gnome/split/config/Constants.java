@@ -74,4 +74,19 @@ public final class Constants
             System.err.println(e.getMessage());
         }
     }
+
+    /**
+     * Load the constants which are needed without the user interface. The
+     * configuration folder is found like GLib does, following the XDG base
+     * directory specification.
+     */
+    public static void loadHeadless() {
+        String folder = System.getenv("XDG_CONFIG_HOME");
+        if ((folder == null) || folder.isEmpty()) {
+            folder = System.getProperty("user.home") + "/.config";
+        }
+
+        CONFIG_FOLDER = folder + "/gnome-split/";
+        CONFIG_FILE = CONFIG_FOLDER + "config";
+    }
 }
@@ -0,0 +1,57 @@
+/*
+ * CancellationToken.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A token shared by all the threads working for an action. Once it has been
+ * cancelled (because the action has been stopped or because one of the
+ * threads failed), all the threads should give up as soon as possible.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class CancellationToken
+{
+    /**
+     * Set once the token has been cancelled, it can't be reset.
+     */
+    private final AtomicBoolean cancelled;
+
+    public CancellationToken() {
+        this.cancelled = new AtomicBoolean(false);
+    }
+
+    /**
+     * Cancel the token. It returns <code>true</code> if this call cancelled
+     * it, <code>false</code> if it was already cancelled.
+     */
+    public boolean cancel() {
+        return cancelled.compareAndSet(false, true);
+    }
+
+    /**
+     * Tell if the token has been cancelled.
+     */
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+}
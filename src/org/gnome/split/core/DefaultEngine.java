@@ -20,12 +20,35 @@
  */
 package org.gnome.split.core;
 
-import static org.gnome.split.GnomeSplit.engine;
-
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.gnome.split.config.Configuration;
+import org.gnome.split.core.events.CopyEvent;
+import org.gnome.split.core.events.PauseEvent;
+import org.gnome.split.core.io.BufferPool;
+import org.gnome.split.core.io.Journal;
+import org.gnome.split.core.io.MappedBuffers;
+import org.gnome.split.core.metrics.EngineMetrics;
+import org.gnome.split.core.utils.MD5Hasher;
 
 /**
  * A class giving a model and an initial behavior for all merger and splitter
@@ -36,14 +59,48 @@ import java.util.TimerTask;
 public abstract class DefaultEngine implements Engine
 {
     /**
-     * To manage synchronization of thread.
+     * Maximum size of a file region mapped in memory at once. Files are
+     * mapped by windows so files bigger than 2 GB can be handled.
+     */
+    private static final long MAP_WINDOW = 64 * 1024 * 1024;
+
+    /**
+     * Maximum number of bytes copied between two checks of the state of the
+     * action, so a pause or a stop takes effect quickly whatever the size of
+     * the buffer is.
      */
-    protected final Object mutex;
+    protected static final int SLICE = 1024 * 1024;
 
     /**
-     * Total of bytes read.
+     * The action is running.
      */
-    protected long total;
+    private static final int RUNNING = 0;
+
+    /**
+     * The action is paused.
+     */
+    private static final int PAUSED = 1;
+
+    /**
+     * The action has been stopped, this state is final.
+     */
+    private static final int STOPPED = 2;
+
+    /**
+     * The configuration used by the engine.
+     */
+    protected final Configuration config;
+
+    /**
+     * The listener which is notified of the progress of the engine.
+     */
+    protected final EngineListener engine;
+
+    /**
+     * Total of bytes read. It can be updated by several threads at the same
+     * time without contention.
+     */
+    protected final LongAdder total;
 
     /**
      * The directory where the file(s) is/are created.
@@ -56,28 +113,66 @@ public abstract class DefaultEngine implements Engine
     protected List<String> chunks;
 
     /**
-     * To manage pause and resume actions.
+     * State of the action (running, paused or stopped).
+     */
+    private final AtomicInteger state;
+
+    /**
+     * Threads parked while the action is paused.
+     */
+    private final Queue<Thread> waiters;
+
+    /**
+     * The current pause, recorded once the action is resumed or stopped.
+     */
+    private final AtomicReference<PauseEvent> pause;
+
+    /**
+     * Cancelled when the action is stopped or when a worker thread failed,
+     * so the other ones stop their work.
      */
-    protected boolean paused;
+    protected final CancellationToken cancellation;
 
     /**
-     * To stop an action
+     * Set while the MD5 sum is calculated, the progress is not published in
+     * the meantime.
      */
-    protected boolean stopped;
+    protected volatile boolean hashing;
 
     /**
-     * A timer to calculate the speed.
+     * Measures of the work done by the action.
      */
-    private Timer speed;
+    protected final EngineMetrics metrics;
 
-    public DefaultEngine() {
-        this.mutex = new Object();
-        this.total = 0;
+    /**
+     * If set, records the parts which are done so the action can be resumed
+     * if it is interrupted.
+     */
+    protected volatile Journal journal;
+
+    /**
+     * Time when the speed was last published, in nanoseconds. It is only
+     * used by the sampler thread.
+     */
+    private long sampledTime;
+
+    /**
+     * Create an engine using the <code>config</code> and notifying the
+     * <code>engine</code> listener.
+     */
+    public DefaultEngine(Configuration config, EngineListener engine) {
+        this.config = config;
+        this.engine = engine;
+        this.total = new LongAdder();
         this.directory = null;
         this.chunks = new ArrayList<String>();
-        this.paused = false;
-        this.stopped = false;
-        this.speed = null;
+        this.state = new AtomicInteger(RUNNING);
+        this.waiters = new ConcurrentLinkedQueue<Thread>();
+        this.pause = new AtomicReference<PauseEvent>();
+        this.cancellation = new CancellationToken();
+        this.hashing = false;
+        this.metrics = new EngineMetrics();
+        this.journal = null;
     }
 
     @Override
@@ -91,38 +186,65 @@ public abstract class DefaultEngine implements Engine
 
     @Override
     public void pause() {
-        paused = true;
-        engine.engineSuspended();
+        if (state.compareAndSet(RUNNING, PAUSED)) {
+            pause.set(PauseEvent.start(this.getFilename()));
+            engine.engineSuspended();
+        }
     }
 
     @Override
     public void resume() {
-        synchronized (mutex) {
-            paused = false;
-            mutex.notify();
+        if (state.compareAndSet(PAUSED, RUNNING)) {
+            // Wake up the paused threads
+            this.unparkWaiters();
+            this.endPause();
             engine.engineRunning();
         }
     }
 
     @Override
     public void stop(boolean clean) {
-        if (paused) {
-            // If suspended, resume the action
-            this.resume();
-        }
-
-        if (speed != null) {
-            // Stop the speed calculator
-            this.stopSpeedCalculator();
-        }
+        // Stop the action, even if it is paused
+        state.set(STOPPED);
+        cancellation.cancel();
+        this.unparkWaiters();
+        this.endPause();
+    }
 
-        // Stop the action
-        stopped = true;
+    @Override
+    public EngineMetrics getMetrics() {
+        return metrics;
     }
 
     @Override
     public boolean paused() {
-        return paused;
+        return state.get() == PAUSED;
+    }
+
+    /**
+     * Tell if the action has been stopped.
+     */
+    protected boolean isStopped() {
+        return state.get() == STOPPED;
+    }
+
+    /**
+     * Record the end of the current pause, if any.
+     */
+    private void endPause() {
+        PauseEvent event = pause.getAndSet(null);
+        if (event != null) {
+            event.commit();
+        }
+    }
+
+    /**
+     * Wake up all the threads parked because of a pause.
+     */
+    private void unparkWaiters() {
+        for (Thread waiter : waiters) {
+            LockSupport.unpark(waiter);
+        }
     }
 
     @Override
@@ -130,6 +252,13 @@ public abstract class DefaultEngine implements Engine
         return directory;
     }
 
+    /**
+     * Notify the view that a part of the file has been read.
+     */
+    protected void fireEngineDone(long done, long total) {
+        engine.engineDone(done, total);
+    }
+
     /**
      * Notify the view from a speed that has changed.
      */
@@ -138,56 +267,377 @@ public abstract class DefaultEngine implements Engine
     }
 
     /**
-     * Start the speed calculator which should notify the view from the speed
-     * of the action.
+     * Start notifying the view from the progress and the speed of the
+     * action. The engine is also published using JMX while it runs.
      */
-    protected void startSpeedCalculator() {
-        // Create a new timer and start its task
-        speed = new Timer("Speed calculator");
-        speed.scheduleAtFixedRate(new SpeedCalculatorTask(total), 1, 2000);
+    protected void startSampling() {
+        sampledTime = System.nanoTime();
+        metrics.sample(total.sum(), this.getFileLength(), sampledTime);
+        EngineSampler.register(this);
+        EngineManagement.register(this);
     }
 
     /**
-     * Stop the speed calculator.
+     * Stop notifying the view from the progress and the speed of the
+     * action.
      */
-    protected void stopSpeedCalculator() {
-        // Stop the timer
-        if (speed != null) {
-            speed.cancel();
-            speed = null;
-        }
+    protected void stopSampling() {
+        EngineManagement.unregister(this);
+        EngineSampler.unregister(this);
 
         // Make displayed speed to unknown
         this.fireEngineSpeedChanged(-1);
     }
 
     /**
-     * A class that calculate the speed of the action.
-     * 
-     * @author Guillaume Mazoyer
+     * Called by the sampler at each tick, at the <code>now</code> time (in
+     * nanoseconds). The progress is published at each tick, the smoothed
+     * speed every 2 seconds.
      */
-    private class SpeedCalculatorTask extends TimerTask
-    {
-        private long oldTotal;
+    void sample(long now) {
+        long current = total.sum();
+        long length = this.getFileLength();
 
-        private SpeedCalculatorTask(long oldTotal) {
-            this.oldTotal = oldTotal;
-        }
+        // Update the throughput at each tick so it is smoothed
+        metrics.sample(current, length, now);
 
-        @Override
-        public void run() {
-            // The speed is calculated every 2 seconds
-            long speed = (total - oldTotal) / 2;
+        if (!hashing) {
+            this.fireEngineDone(current, length);
+        }
 
-            // Update the old total
-            oldTotal = total;
+        if ((now - sampledTime) >= TimeUnit.SECONDS.toNanos(2)) {
+            long speed = metrics.getRate();
+            sampledTime = now;
 
             // Notify the view
-            if (speed == 0) {
-                fireEngineSpeedChanged(-1);
+            if (speed <= 0) {
+                this.fireEngineSpeedChanged(-1);
             } else {
-                fireEngineSpeedChanged(speed);
+                this.fireEngineSpeedChanged(speed);
+            }
+        }
+    }
+
+    /**
+     * Block the current thread while the action is paused. It returns
+     * <code>false</code> if the action has been stopped (or if a worker
+     * thread failed), else it returns <code>true</code>.
+     */
+    protected boolean waitIfPaused() {
+        if (state.get() == PAUSED) {
+            Thread current = Thread.currentThread();
+            waiters.add(current);
+
+            try {
+                // The state is checked after being queued so a resume can't
+                // be missed
+                while (state.get() == PAUSED) {
+                    LockSupport.park(this);
+                }
+            } finally {
+                waiters.remove(current);
+            }
+        }
+
+        return !cancellation.isCancelled();
+    }
+
+    /**
+     * Get the number of threads which can write (or read) parts at the same
+     * time. By default, it is the one chosen by the user.
+     */
+    protected int getWorkerThreads() {
+        return config.WORKER_THREADS;
+    }
+
+    /**
+     * Fill the <code>buffer</code> with the data of the <code>source</code>
+     * starting at <code>position</code>. The data is read by slices so the
+     * action can still be paused or stopped. It returns <code>true</code> if
+     * the buffer has been filled, else it returns <code>false</code>.
+     */
+    protected boolean read(FileChannel source, ByteBuffer buffer, long position) throws IOException {
+        int limit = buffer.limit();
+        long start = position - buffer.position();
+
+        try {
+            while (buffer.position() < limit) {
+                if (!this.waitIfPaused()) {
+                    // Stop the current thread
+                    return false;
+                }
+
+                buffer.limit(Math.min(limit, buffer.position() + SLICE));
+                while (buffer.hasRemaining()) {
+                    long time = metrics.begin();
+                    int read = source.read(buffer, start + buffer.position());
+                    metrics.endRead(time);
+
+                    if (read < 0) {
+                        // The file is shorter than expected
+                        throw new EOFException();
+                    }
+                }
             }
+        } finally {
+            buffer.limit(limit);
+        }
+
+        // Success
+        return true;
+    }
+
+    /**
+     * Write the remaining data of the <code>buffer</code> in the
+     * <code>target</code> starting at <code>position</code>. The data is
+     * written by slices so the action can still be paused or stopped. It
+     * returns <code>true</code> if the buffer has been written, else it
+     * returns <code>false</code>.
+     */
+    protected boolean write(FileChannel target, ByteBuffer buffer, long position) throws IOException {
+        int limit = buffer.limit();
+        long start = position - buffer.position();
+
+        try {
+            while (buffer.position() < limit) {
+                if (!this.waitIfPaused()) {
+                    // Stop the current thread
+                    return false;
+                }
+
+                buffer.limit(Math.min(limit, buffer.position() + SLICE));
+                while (buffer.hasRemaining()) {
+                    long time = metrics.begin();
+                    target.write(buffer, start + buffer.position());
+                    metrics.endWrite(time);
+                }
+            }
+        } finally {
+            buffer.limit(limit);
+        }
+
+        // Success
+        return true;
+    }
+
+    /**
+     * Write the remaining data of the <code>buffer</code> at the current
+     * position of the <code>target</code>. The data is written by slices so
+     * the action can still be paused or stopped. It returns
+     * <code>true</code> if the buffer has been written, else it returns
+     * <code>false</code>.
+     */
+    protected boolean write(WritableByteChannel target, ByteBuffer buffer) throws IOException {
+        int limit = buffer.limit();
+
+        try {
+            while (buffer.position() < limit) {
+                if (!this.waitIfPaused()) {
+                    // Stop the current thread
+                    return false;
+                }
+
+                buffer.limit(Math.min(limit, buffer.position() + SLICE));
+                while (buffer.hasRemaining()) {
+                    long time = metrics.begin();
+                    target.write(buffer);
+                    metrics.endWrite(time);
+                }
+            }
+        } finally {
+            buffer.limit(limit);
+        }
+
+        // Success
+        return true;
+    }
+
+    /**
+     * Copy <code>length</code> bytes of the <code>source</code>, starting at
+     * <code>start</code>, in the <code>target</code> at the
+     * <code>offset</code> position. Both files are mapped in memory by
+     * windows, and the data is copied by slices so the action can still be
+     * paused or stopped. If <code>hasher</code> is set, it is updated with
+     * the data. The copy is recorded for the <code>chunk</code>. It returns
+     * <code>true</code> if the copy was fully performed, else it returns
+     * <code>false</code>.
+     */
+    protected boolean mapCopy(String chunk, FileChannel source, long start, long length, FileChannel target,
+            long offset, MD5Hasher hasher) throws IOException {
+        long read = 0;
+
+        if ((start + length) > source.size()) {
+            // Mapping would extend a file which is only read
+            throw new EOFException();
+        }
+
+        CopyEvent event = CopyEvent.start(chunk, "mapped");
+        try {
+            while (read < length) {
+                // Map the next window of both files (mapping the target
+                // extends it if needed)
+                int window = (int) Math.min(MAP_WINDOW, length - read);
+                MappedByteBuffer in = null;
+                MappedByteBuffer out = null;
+                try {
+                    in = source.map(MapMode.READ_ONLY, start + read, window);
+                    out = target.map(MapMode.READ_WRITE, offset + read, window);
+
+                    while (in.hasRemaining()) {
+                        if (!this.waitIfPaused()) {
+                            // Stop the current thread
+                            return false;
+                        }
+
+                        // Define how many bytes to copy, the mapping itself
+                        // is limited to the slice
+                        int position = in.position();
+                        int count = Math.min(SLICE, in.remaining());
+                        in.limit(position + count);
+
+                        long time = metrics.begin();
+                        if (hasher != null) {
+                            // Update the MD5 sum with the same data
+                            hasher.update(in);
+                            in.position(position);
+                            time = metrics.end(EngineMetrics.HASH, time);
+                        }
+
+                        // Copy data (the page faults are counted here)
+                        out.put(in);
+                        metrics.end(EngineMetrics.COPY, time);
+                        in.limit(in.capacity());
+
+                        // Update read and write status
+                        read += count;
+                        total.add(count);
+                        event = event.update(count);
+                    }
+                } finally {
+                    // Do not wait for the garbage collector to release the
+                    // mappings, they would pile up
+                    MappedBuffers.unmap(in);
+                    MappedBuffers.unmap(out);
+                }
+            }
+        } finally {
+            event.finish();
+        }
+
+        // Success
+        return true;
+    }
+
+    /**
+     * Count <code>length</code> bytes which have been copied by a previous
+     * run of the action. If <code>hasher</code> is set, the data is read
+     * again from the <code>channel</code>, starting at <code>position</code>,
+     * to update it. It returns <code>true</code> if the data was fully
+     * handled, else it returns <code>false</code>.
+     */
+    protected boolean skip(FileChannel channel, long position, long length, MD5Hasher hasher) throws IOException {
+        if (hasher == null) {
+            // Nothing to read
+            total.add(length);
+            return true;
+        }
+
+        int bufferSize = config.BUFFER_SIZE;
+        long read = 0;
+
+        BufferPool pool = BufferPool.getHeapPool();
+        ByteBuffer buffer = pool.acquire(bufferSize);
+
+        try {
+            while (read < length) {
+                // Define how many bytes to read
+                int count = (bufferSize > (length - read)) ? (int) (length - read) : bufferSize;
+                buffer.clear();
+                buffer.limit(count);
+
+                // Read data (a short file throws an EOFException)
+                if (!this.read(channel, buffer, position + read)) {
+                    // Stop the current thread
+                    return false;
+                }
+
+                // Update the MD5 sum
+                long time = metrics.begin();
+                hasher.update(buffer.array(), 0, count);
+                metrics.end(EngineMetrics.HASH, time);
+
+                // Update read status
+                read += count;
+                total.add(count);
+            }
+        } finally {
+            // Give the buffer back
+            pool.release(buffer);
+        }
+
+        // Success
+        return true;
+    }
+
+    /**
+     * Run all the <code>tasks</code> using at most <code>threads</code>
+     * threads and wait for them to be done. If a task fails, the other ones
+     * are stopped and the first error is thrown.
+     */
+    protected void runWorkers(List<Callable<Void>> tasks, int threads, final String name) throws IOException {
+        final AtomicInteger running = new AtomicInteger(tasks.size());
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        final Thread waiter = Thread.currentThread();
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        try {
+            for (final Callable<Void> task : tasks) {
+                workers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            if (failure.get() == null) {
+                                task.call();
+                            }
+                        } catch (Exception e) {
+                            // Keep the first error and make the other
+                            // threads give up
+                            if (failure.compareAndSet(null, e)) {
+                                cancellation.cancel();
+                            }
+                        } finally {
+                            if (running.decrementAndGet() == 0) {
+                                // Wake up the waiting thread
+                                LockSupport.unpark(waiter);
+                            }
+                        }
+                    }
+                });
+            }
+
+            // Wait for all the tasks
+            while (running.get() > 0) {
+                LockSupport.park(this);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        Exception error = failure.get();
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        } else if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if (error != null) {
+            throw new IOException(error);
         }
     }
 }
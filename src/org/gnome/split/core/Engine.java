@@ -20,6 +20,8 @@
  */
 package org.gnome.split.core;
 
+import org.gnome.split.core.metrics.EngineMetrics;
+
 /**
  * Interface to define a way that all engines should act.
  * 
@@ -61,4 +63,9 @@ public interface Engine extends Runnable
      * Get the length of the file to read/create.
      */
     public long getFileLength();
+
+    /**
+     * Get the measures of the work done by the current action.
+     */
+    public EngineMetrics getMetrics();
 }
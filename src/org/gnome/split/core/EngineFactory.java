@@ -21,8 +21,14 @@
 package org.gnome.split.core;
 
 import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Constructor;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 
+import org.gnome.split.config.Configuration;
 import org.gnome.split.core.merger.DefaultMergeEngine;
 import org.gnome.split.core.model.MergeModel;
 import org.gnome.split.core.model.SplitModel;
@@ -44,7 +50,9 @@ public class EngineFactory
         org.gnome.split.core.splitter.GnomeSplit.class,
         org.gnome.split.core.splitter.Xtremsplit.class,
         org.gnome.split.core.splitter.KFK.class,
-        org.gnome.split.core.splitter.YoyoCut.class
+        org.gnome.split.core.splitter.YoyoCut.class,
+        org.gnome.split.core.splitter.ContentDefined.class,
+        org.gnome.split.core.splitter.Compressed.class
     };
 
     /**
@@ -55,13 +63,17 @@ public class EngineFactory
         org.gnome.split.core.merger.GnomeSplit.class,
         org.gnome.split.core.merger.Xtremsplit.class,
         org.gnome.split.core.merger.KFK.class,
-        org.gnome.split.core.merger.YoyoCut.class
+        org.gnome.split.core.merger.YoyoCut.class,
+        org.gnome.split.core.merger.ContentDefined.class,
+        org.gnome.split.core.merger.Compressed.class
     };
 
     /**
-     * Create a split engine to split a file.
+     * Create a split engine to split a file, using the <code>config</code>
+     * and notifying the <code>listener</code>.
      */
-    public static DefaultSplitEngine createSplitEngine(SplitModel model) {
+    public static DefaultSplitEngine createSplitEngine(Configuration config, EngineListener listener,
+            SplitModel model) {
         DefaultSplitEngine engine = null;
 
         // Split related info
@@ -73,10 +85,11 @@ public class EngineFactory
         Constructor<?> constructor;
         try {
             // Get the class constructor
-            constructor = splitters[algorithm].getConstructor(File.class, long.class, String.class);
+            constructor = splitters[algorithm].getConstructor(Configuration.class, EngineListener.class,
+                    File.class, long.class, String.class);
 
             // Create the runnable object
-            engine = (DefaultSplitEngine) constructor.newInstance(file, size, dest);
+            engine = (DefaultSplitEngine) constructor.newInstance(config, listener, file, size, dest);
         } catch (Exception e) {
             // Should *never* happen
             e.printStackTrace();
@@ -87,9 +100,40 @@ public class EngineFactory
     }
 
     /**
-     * Create a merge engine to merge files.
+     * Create a split engine to split the data read from the
+     * <code>input</code>, whose length is not known in advance. The file of
+     * the <code>model</code> only gives the name of the data. It returns
+     * <code>null</code> if the algorithm can't split such data.
      */
-    public static DefaultMergeEngine createMergeEngine(MergeModel model) {
+    public static DefaultSplitEngine createSplitEngine(Configuration config, EngineListener listener,
+            SplitModel model, ReadableByteChannel input) {
+        DefaultSplitEngine engine = createSplitEngine(config, listener, model);
+
+        if ((engine == null) || !engine.canStream()) {
+            // The whole file is needed
+            return null;
+        }
+
+        engine.setStream(input);
+        return engine;
+    }
+
+    /**
+     * Create a split engine to split the data read from the
+     * <code>input</code>, see
+     * {@link #createSplitEngine(Configuration, EngineListener, SplitModel, ReadableByteChannel)}.
+     */
+    public static DefaultSplitEngine createSplitEngine(Configuration config, EngineListener listener,
+            SplitModel model, InputStream input) {
+        return createSplitEngine(config, listener, model, Channels.newChannel(input));
+    }
+
+    /**
+     * Create a merge engine to merge files, using the <code>config</code>
+     * and notifying the <code>listener</code>.
+     */
+    public static DefaultMergeEngine createMergeEngine(Configuration config, EngineListener listener,
+            MergeModel model) {
         DefaultMergeEngine engine = null;
 
         // Merge related info
@@ -118,16 +162,23 @@ public class EngineFactory
         } else if (name.endsWith(extensions[6])) {
             // Use YoyoCut algorithm
             index = 4;
+        } else if (name.endsWith(extensions[7])) {
+            // Use content defined algorithm
+            index = 5;
+        } else if (name.endsWith(extensions[8])) {
+            // Use compressed algorithm
+            index = 6;
         }
 
         if (index != -1) {
             Constructor<?> constructor;
             try {
                 // Get the class constructor
-                constructor = mergers[index].getConstructor(File.class, String.class);
+                constructor = mergers[index].getConstructor(Configuration.class, EngineListener.class, File.class,
+                        String.class);
 
                 // Create the runnable object
-                engine = (DefaultMergeEngine) constructor.newInstance(file, dest);
+                engine = (DefaultMergeEngine) constructor.newInstance(config, listener, file, dest);
             } catch (Exception e) {
                 // Should *never* happen
                 e.printStackTrace();
@@ -137,4 +188,30 @@ public class EngineFactory
         // Finally
         return engine;
     }
+
+    /**
+     * Create a merge engine which writes the merged data in the
+     * <code>output</code> instead of creating a file. It returns
+     * <code>null</code> if the format of the chunks is unknown.
+     */
+    public static DefaultMergeEngine createMergeEngine(Configuration config, EngineListener listener,
+            MergeModel model, WritableByteChannel output) {
+        DefaultMergeEngine engine = createMergeEngine(config, listener, model);
+
+        if (engine != null) {
+            engine.setStream(output);
+        }
+
+        return engine;
+    }
+
+    /**
+     * Create a merge engine which writes the merged data in the
+     * <code>output</code>, see
+     * {@link #createMergeEngine(Configuration, EngineListener, MergeModel, WritableByteChannel)}.
+     */
+    public static DefaultMergeEngine createMergeEngine(Configuration config, EngineListener listener,
+            MergeModel model, OutputStream output) {
+        return createMergeEngine(config, listener, model, Channels.newChannel(output));
+    }
 }
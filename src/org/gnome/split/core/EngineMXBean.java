@@ -0,0 +1,90 @@
+/*
+ * EngineMXBean.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core;
+
+/**
+ * Management interface of a running {@link Engine engine}, so it can be
+ * watched and controlled using JMX.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public interface EngineMXBean
+{
+    /**
+     * Get the name of the file to read/create.
+     */
+    public String getFilename();
+
+    /**
+     * Get the number of bytes which have been handled.
+     */
+    public long getBytesDone();
+
+    /**
+     * Get the length of the file to read/create.
+     */
+    public long getFileLength();
+
+    /**
+     * Get the number of the last part which has been started (starting at
+     * 1), or 0 if none has been started yet.
+     */
+    public int getCurrentPart();
+
+    /**
+     * Get the smoothed throughput in bytes per second, or -1 if it is not
+     * known yet.
+     */
+    public long getRate();
+
+    /**
+     * Get the estimated time needed to finish the action, in seconds, or -1
+     * if it can't be estimated.
+     */
+    public long getRemainingTime();
+
+    /**
+     * Get the current phase of the action: <code>copy</code> or
+     * <code>md5</code>.
+     */
+    public String getPhase();
+
+    /**
+     * Tell if the action is paused or not.
+     */
+    public boolean isPaused();
+
+    /**
+     * Pause the action.
+     */
+    public void pause();
+
+    /**
+     * Resume the previously paused action.
+     */
+    public void resume();
+
+    /**
+     * Stop the action and remove the created file(s) if <code>clean</code>
+     * is set.
+     */
+    public void stop(boolean clean);
+}
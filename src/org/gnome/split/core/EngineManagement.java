@@ -0,0 +1,275 @@
+/*
+ * EngineManagement.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Publish the running engines in the platform MBean server. Each engine
+ * gets its own {@link EngineMXBean MBean} while it runs
+ * (<code>org.gnome.split:type=Engine,id=N,name="FILE"</code>) and an
+ * {@link EnginesMXBean aggregate MBean}
+ * (<code>org.gnome.split:type=Engines</code>) sums them up.
+ * 
+ * @author Guillaume Mazoyer
+ */
+final class EngineManagement
+{
+    /**
+     * Domain of the names of the MBeans.
+     */
+    private static final String DOMAIN = "org.gnome.split";
+
+    /**
+     * Running engines and the names of their MBeans.
+     */
+    private static final Map<DefaultEngine, ObjectName> engines;
+
+    /**
+     * Used to give a unique name to each engine.
+     */
+    private static final AtomicInteger ids;
+
+    /**
+     * Set once the aggregate MBean has been registered.
+     */
+    private static boolean registered;
+
+    static {
+        engines = new LinkedHashMap<DefaultEngine, ObjectName>();
+        ids = new AtomicInteger(0);
+        registered = false;
+    }
+
+    private EngineManagement() {
+
+    }
+
+    /**
+     * Publish the MBean of the <code>engine</code>. A failure is only
+     * reported, the action does not depend on it.
+     */
+    static void register(DefaultEngine engine) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        synchronized (engines) {
+            if (engines.containsKey(engine)) {
+                return;
+            }
+
+            try {
+                if (!registered) {
+                    // The aggregate stays for the whole life of the program
+                    server.registerMBean(new Aggregate(), new ObjectName(DOMAIN + ":type=Engines"));
+                    registered = true;
+                }
+
+                ObjectName name = new ObjectName(DOMAIN + ":type=Engine,id=" + ids.incrementAndGet() + ",name="
+                        + ObjectName.quote(String.valueOf(engine.getFilename())));
+                server.registerMBean(new Monitor(engine), name);
+                engines.put(engine, name);
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Remove the MBean of the <code>engine</code>.
+     */
+    static void unregister(DefaultEngine engine) {
+        synchronized (engines) {
+            ObjectName name = engines.remove(engine);
+            if (name == null) {
+                return;
+            }
+
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Get the running engines.
+     */
+    private static List<DefaultEngine> getEngines() {
+        synchronized (engines) {
+            return new ArrayList<DefaultEngine>(engines.keySet());
+        }
+    }
+
+    /**
+     * The MBean of a running engine.
+     * 
+     * @author Guillaume Mazoyer
+     */
+    private static class Monitor implements EngineMXBean
+    {
+        private DefaultEngine engine;
+
+        private Monitor(DefaultEngine engine) {
+            this.engine = engine;
+        }
+
+        @Override
+        public String getFilename() {
+            return engine.getFilename();
+        }
+
+        @Override
+        public long getBytesDone() {
+            return engine.total.sum();
+        }
+
+        @Override
+        public long getFileLength() {
+            return engine.getFileLength();
+        }
+
+        @Override
+        public int getCurrentPart() {
+            return engine.metrics.getCurrentPart();
+        }
+
+        @Override
+        public long getRate() {
+            return engine.metrics.getRate();
+        }
+
+        @Override
+        public long getRemainingTime() {
+            return engine.metrics.getRemainingTime();
+        }
+
+        @Override
+        public String getPhase() {
+            return engine.hashing ? "md5" : "copy";
+        }
+
+        @Override
+        public boolean isPaused() {
+            return engine.paused();
+        }
+
+        @Override
+        public void pause() {
+            engine.pause();
+        }
+
+        @Override
+        public void resume() {
+            engine.resume();
+        }
+
+        @Override
+        public void stop(boolean clean) {
+            engine.stop(clean);
+        }
+    }
+
+    /**
+     * The MBean summing up all the running engines.
+     * 
+     * @author Guillaume Mazoyer
+     */
+    private static class Aggregate implements EnginesMXBean
+    {
+        @Override
+        public int getRunningCount() {
+            return getEngines().size();
+        }
+
+        @Override
+        public int getPausedCount() {
+            int count = 0;
+            for (DefaultEngine engine : getEngines()) {
+                if (engine.paused()) {
+                    count++;
+                }
+            }
+
+            return count;
+        }
+
+        @Override
+        public long getBytesDone() {
+            long done = 0;
+            for (DefaultEngine engine : getEngines()) {
+                done += engine.total.sum();
+            }
+
+            return done;
+        }
+
+        @Override
+        public long getBytesTotal() {
+            long total = 0;
+            for (DefaultEngine engine : getEngines()) {
+                total += engine.getFileLength();
+            }
+
+            return total;
+        }
+
+        @Override
+        public long getRate() {
+            long rate = 0;
+            for (DefaultEngine engine : getEngines()) {
+                rate += Math.max(0, engine.metrics.getRate());
+            }
+
+            return rate;
+        }
+
+        @Override
+        public void pauseAll() {
+            for (DefaultEngine engine : getEngines()) {
+                engine.pause();
+            }
+        }
+
+        @Override
+        public void resumeAll() {
+            for (DefaultEngine engine : getEngines()) {
+                engine.resume();
+            }
+        }
+
+        @Override
+        public void stopAll(boolean clean) {
+            for (DefaultEngine engine : getEngines()) {
+                engine.stop(clean);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * EngineSampler.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single thread which samples the counters of all the running engines at
+ * a fixed rate and notifies their listeners, instead of having timers for
+ * each engine. The thread only exists while at least one engine is
+ * registered.
+ * 
+ * @author Guillaume Mazoyer
+ */
+final class EngineSampler
+{
+    /**
+     * Time between two samples, in milliseconds.
+     */
+    static final long TICK = 250;
+
+    /**
+     * Engines which are sampled.
+     */
+    private static final List<DefaultEngine> engines;
+
+    /**
+     * Thread used to sample the engines.
+     */
+    private static final ScheduledThreadPoolExecutor executor;
+
+    /**
+     * The periodic task, <code>null</code> when no engine is registered.
+     */
+    private static ScheduledFuture<?> task;
+
+    static {
+        engines = new ArrayList<DefaultEngine>();
+        executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Engine sampler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        // Let the thread die when there is nothing to sample
+        executor.setKeepAliveTime(5, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    private EngineSampler() {
+
+    }
+
+    /**
+     * Start sampling the <code>engine</code>.
+     */
+    static void register(DefaultEngine engine) {
+        synchronized (engines) {
+            if (engines.contains(engine)) {
+                return;
+            }
+
+            engines.add(engine);
+
+            if (task == null) {
+                // First engine, start sampling
+                task = executor.scheduleAtFixedRate(new Runnable() {
+                    @Override
+                    public void run() {
+                        sample();
+                    }
+                }, 1, TICK, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Stop sampling the <code>engine</code>. Once this method returns, the
+     * listener of the engine will not be notified by the sampler anymore.
+     */
+    static void unregister(DefaultEngine engine) {
+        synchronized (engines) {
+            engines.remove(engine);
+
+            if (engines.isEmpty() && (task != null)) {
+                // Last engine, stop sampling
+                task.cancel(false);
+                task = null;
+            }
+        }
+    }
+
+    /**
+     * Take a sample of all the registered engines.
+     */
+    private static void sample() {
+        synchronized (engines) {
+            long now = System.nanoTime();
+
+            for (DefaultEngine engine : engines) {
+                try {
+                    engine.sample(now);
+                } catch (RuntimeException e) {
+                    // A failing listener must not stop the other updates
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
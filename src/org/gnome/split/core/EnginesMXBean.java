@@ -0,0 +1,74 @@
+/*
+ * EnginesMXBean.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core;
+
+/**
+ * Management interface giving a summary of all the running
+ * {@link Engine engines}, so they can be watched and controlled at once
+ * using JMX.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public interface EnginesMXBean
+{
+    /**
+     * Get the number of running engines (paused ones included).
+     */
+    public int getRunningCount();
+
+    /**
+     * Get the number of paused engines.
+     */
+    public int getPausedCount();
+
+    /**
+     * Get the number of bytes which have been handled by the running
+     * engines.
+     */
+    public long getBytesDone();
+
+    /**
+     * Get the number of bytes that the running engines have to handle.
+     */
+    public long getBytesTotal();
+
+    /**
+     * Get the sum of the smoothed throughputs of the running engines, in
+     * bytes per second.
+     */
+    public long getRate();
+
+    /**
+     * Pause all the running engines.
+     */
+    public void pauseAll();
+
+    /**
+     * Resume all the paused engines.
+     */
+    public void resumeAll();
+
+    /**
+     * Stop all the running engines, and remove the created files if
+     * <code>clean</code> is set.
+     */
+    public void stopAll(boolean clean);
+}
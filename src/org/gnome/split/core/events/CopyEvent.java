@@ -0,0 +1,112 @@
+/*
+ * CopyEvent.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core.events;
+
+/**
+ * Flight recorder event for a batch of data copied from a file to another
+ * one. Consecutive copies are gathered until they reach
+ * {@link #THRESHOLD} bytes, so a copy made of small buffers does not flood
+ * the recording.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class CopyEvent
+{
+    /**
+     * Minimum number of bytes of a batch.
+     */
+    public static final long THRESHOLD = 4 * 1024 * 1024;
+
+    /**
+     * Chunk being written or read.
+     */
+    public String file;
+
+    /**
+     * Way used to copy the data (stream, transfer, mapped or update).
+     */
+    public String mode;
+
+    /**
+     * The bytes copied in the batch.
+     */
+    public long bytes;
+
+    /**
+     * The event given to the flight recorder, <code>null</code> if it is not
+     * available.
+     */
+    private FlightRecorder.Copy recorded;
+
+    /**
+     * Start a batch of copies for the <code>file</code> using the
+     * <code>mode</code>.
+     */
+    public static CopyEvent start(String file, String mode) {
+        CopyEvent event = new CopyEvent();
+        event.file = file;
+        event.mode = mode;
+
+        // Only create the recorded event if the API is there
+        if (FlightRecorder.AVAILABLE) {
+            event.recorded = new FlightRecorder.Copy();
+            event.recorded.begin();
+        }
+
+        return event;
+    }
+
+    /**
+     * Add <code>count</code> copied bytes to the batch. If the batch is big
+     * enough, it is recorded and a new one is returned, else the same batch
+     * is returned.
+     */
+    public CopyEvent update(long count) {
+        bytes += count;
+        if (bytes < THRESHOLD) {
+            return this;
+        }
+
+        this.commit();
+        return start(file, mode);
+    }
+
+    /**
+     * Record what is left in the batch.
+     */
+    public void finish() {
+        if (bytes > 0) {
+            this.commit();
+        }
+    }
+
+    /**
+     * Record the event, if the flight recorder is available.
+     */
+    public void commit() {
+        if (recorded != null) {
+            recorded.file = file;
+            recorded.mode = mode;
+            recorded.bytes = bytes;
+            recorded.commit();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * FlightRecorder.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The events given to the flight recorder. They are only created when the
+ * JVM provides the <code>jdk.jfr</code> API, so the engines still run
+ * without it; the public events of this package are what the engines use.
+ * 
+ * @author Guillaume Mazoyer
+ */
+final class FlightRecorder
+{
+    /**
+     * If the flight recorder API is available, checked once.
+     */
+    static final boolean AVAILABLE;
+
+    static {
+        boolean available;
+        try {
+            Class.forName("jdk.jfr.Event", false, FlightRecorder.class.getClassLoader());
+            available = true;
+        } catch (ClassNotFoundException e) {
+            available = false;
+        } catch (LinkageError e) {
+            available = false;
+        }
+
+        AVAILABLE = available;
+    }
+
+    private FlightRecorder() {
+
+    }
+
+    @Name("org.gnome.split.Copy")
+    @Label("Copy")
+    @Category("GNOME Split")
+    @Description("Data copied from a file to another one")
+    static final class Copy extends Event
+    {
+        @Label("File")
+        @Description("Chunk being written or read")
+        String file;
+
+        @Label("Mode")
+        @Description("Way used to copy the data (stream, transfer, mapped or update)")
+        String mode;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("org.gnome.split.File")
+    @Label("File Open/Close")
+    @Category("GNOME Split")
+    @Description("A file opened or closed by an engine")
+    static final class File extends Event
+    {
+        @Label("Action")
+        @Description("What is done with the file (open or close)")
+        String action;
+
+        @Label("File")
+        String file;
+    }
+
+    @Name("org.gnome.split.Header")
+    @Label("Header")
+    @Category("GNOME Split")
+    @Description("Headers written by a split or parsed by a merge")
+    static final class Header extends Event
+    {
+        @Label("Action")
+        @Description("What is done with the headers (write or read)")
+        String action;
+
+        @Label("File")
+        String file;
+    }
+
+    @Name("org.gnome.split.MD5")
+    @Label("MD5 Sum")
+    @Category("GNOME Split")
+    @Description("MD5 sum verification")
+    static final class MD5 extends Event
+    {
+        @Label("Action")
+        @Description("Verification of a chunk (verify) or wait for all of them (wait)")
+        String action;
+
+        @Label("File")
+        String file;
+
+        @Label("Bytes")
+        @Description("Data included in the MD5 sum")
+        @DataAmount
+        long bytes;
+
+        @Label("Valid")
+        @Description("Whether the MD5 sum is the expected one")
+        boolean valid;
+    }
+
+    @Name("org.gnome.split.Part")
+    @Label("Part")
+    @Category("GNOME Split")
+    @Description("Chunk written by a split or read by a merge")
+    static final class Part extends Event
+    {
+        @Label("Action")
+        @Description("What is done with the chunk (write or read)")
+        String action;
+
+        @Label("File")
+        String file;
+
+        @Label("Number")
+        @Description("Number of the chunk, starting at 1")
+        int number;
+
+        @Label("Bytes")
+        @Description("Data of the file copied to or from the chunk")
+        @DataAmount
+        long bytes;
+
+        @Label("Completed")
+        @Description("Whether the chunk has been fully handled")
+        boolean completed;
+    }
+
+    @Name("org.gnome.split.Pause")
+    @Label("Pause")
+    @Category("GNOME Split")
+    @Description("An action paused by the user")
+    static final class Pause extends Event
+    {
+        @Label("File")
+        @Description("File read or created by the action")
+        String file;
+    }
+}
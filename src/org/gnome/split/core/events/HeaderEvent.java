@@ -0,0 +1,75 @@
+/*
+ * HeaderEvent.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core.events;
+
+/**
+ * Flight recorder event for headers (and MD5 sums stored in the chunks)
+ * which have been written or parsed.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class HeaderEvent
+{
+    /**
+     * What is done with the headers (write or read).
+     */
+    public String action;
+
+    /**
+     * The file holding the headers.
+     */
+    public String file;
+
+    /**
+     * The event given to the flight recorder, <code>null</code> if it is not
+     * available.
+     */
+    private FlightRecorder.Header recorded;
+
+    /**
+     * Start measuring the <code>action</code> done with the headers of the
+     * <code>file</code>.
+     */
+    public static HeaderEvent start(String action, String file) {
+        HeaderEvent event = new HeaderEvent();
+        event.action = action;
+        event.file = file;
+
+        // Only create the recorded event if the API is there
+        if (FlightRecorder.AVAILABLE) {
+            event.recorded = new FlightRecorder.Header();
+            event.recorded.begin();
+        }
+
+        return event;
+    }
+
+    /**
+     * Record the event, if the flight recorder is available.
+     */
+    public void commit() {
+        if (recorded != null) {
+            recorded.action = action;
+            recorded.file = file;
+            recorded.commit();
+        }
+    }
+}
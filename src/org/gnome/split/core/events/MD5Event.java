@@ -0,0 +1,87 @@
+/*
+ * MD5Event.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core.events;
+
+/**
+ * Flight recorder event for the verification of the MD5 sum of a chunk, or
+ * for the time an engine waits for the verifications to be done.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class MD5Event
+{
+    /**
+     * Verification of a chunk (verify) or wait for all of them (wait).
+     */
+    public String action;
+
+    /**
+     * The file.
+     */
+    public String file;
+
+    /**
+     * Data included in the MD5 sum.
+     */
+    public long bytes;
+
+    /**
+     * Whether the MD5 sum is the expected one.
+     */
+    public boolean valid;
+
+    /**
+     * The event given to the flight recorder, <code>null</code> if it is not
+     * available.
+     */
+    private FlightRecorder.MD5 recorded;
+
+    /**
+     * Start measuring the <code>action</code> done with the MD5 sum of the
+     * <code>file</code>.
+     */
+    public static MD5Event start(String action, String file) {
+        MD5Event event = new MD5Event();
+        event.action = action;
+        event.file = file;
+
+        // Only create the recorded event if the API is there
+        if (FlightRecorder.AVAILABLE) {
+            event.recorded = new FlightRecorder.MD5();
+            event.recorded.begin();
+        }
+
+        return event;
+    }
+
+    /**
+     * Record the event, if the flight recorder is available.
+     */
+    public void commit() {
+        if (recorded != null) {
+            recorded.action = action;
+            recorded.file = file;
+            recorded.bytes = bytes;
+            recorded.valid = valid;
+            recorded.commit();
+        }
+    }
+}
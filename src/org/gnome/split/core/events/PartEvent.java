@@ -0,0 +1,94 @@
+/*
+ * PartEvent.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core.events;
+
+/**
+ * Flight recorder event for a chunk which has been written (split) or read
+ * (merge), from its opening to its closing.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class PartEvent
+{
+    /**
+     * What is done with the chunk (write or read).
+     */
+    public String action;
+
+    /**
+     * The chunk.
+     */
+    public String file;
+
+    /**
+     * Number of the chunk, starting at 1.
+     */
+    public int number;
+
+    /**
+     * Data of the file copied to or from the chunk.
+     */
+    public long bytes;
+
+    /**
+     * Whether the chunk has been fully handled.
+     */
+    public boolean completed;
+
+    /**
+     * The event given to the flight recorder, <code>null</code> if it is not
+     * available.
+     */
+    private FlightRecorder.Part recorded;
+
+    /**
+     * Start measuring the <code>action</code> done with the chunk
+     * <code>number</code>.
+     */
+    public static PartEvent start(String action, String file, int number) {
+        PartEvent event = new PartEvent();
+        event.action = action;
+        event.file = file;
+        event.number = number;
+
+        // Only create the recorded event if the API is there
+        if (FlightRecorder.AVAILABLE) {
+            event.recorded = new FlightRecorder.Part();
+            event.recorded.begin();
+        }
+
+        return event;
+    }
+
+    /**
+     * Record the event, if the flight recorder is available.
+     */
+    public void commit() {
+        if (recorded != null) {
+            recorded.action = action;
+            recorded.file = file;
+            recorded.number = number;
+            recorded.bytes = bytes;
+            recorded.completed = completed;
+            recorded.commit();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * PauseEvent.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core.events;
+
+/**
+ * Flight recorder event for the time an action has been paused, from the
+ * pause to the resume (or the stop).
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class PauseEvent
+{
+    /**
+     * File read or created by the action.
+     */
+    public String file;
+
+    /**
+     * The event given to the flight recorder, <code>null</code> if it is not
+     * available.
+     */
+    private FlightRecorder.Pause recorded;
+
+    /**
+     * Start measuring a pause of the action on the <code>file</code>.
+     */
+    public static PauseEvent start(String file) {
+        PauseEvent event = new PauseEvent();
+        event.file = file;
+
+        // Only create the recorded event if the API is there
+        if (FlightRecorder.AVAILABLE) {
+            event.recorded = new FlightRecorder.Pause();
+            event.recorded.begin();
+        }
+
+        return event;
+    }
+
+    /**
+     * Record the event, if the flight recorder is available.
+     */
+    public void commit() {
+        if (recorded != null) {
+            recorded.file = file;
+            recorded.commit();
+        }
+    }
+}
@@ -20,22 +20,22 @@
  */
 package org.gnome.split.core.exception;
 
-import static org.freedesktop.bindings.Internationalization._;
-
 /**
- * Enumeration which contains all error messages.
+ * Enumeration which contains all error messages. The messages are only
+ * marked for translation here, so the engines can be used without the user
+ * interface; they are translated when they are displayed.
  * 
  * @author Guillaume Mazoyer
  */
 public enum ExceptionMessage
 {
     MD5_DIFFER(
-            _("MD5 sums are different."),
-            _("There is no guarantee that the created file will work. Maybe you should try to merge the chunks again.")),
-    INVALID_SIZE(_("Invalid chunk size."),
-            _("You must specify a size which is lower than the size of the file to split.")),
-    MISSING_CHUNK(_("Missing chunk."),
-            _("A chunk appears to be missing. Please check that all chunks are in the same directory."));
+            N_("MD5 sums are different."),
+            N_("There is no guarantee that the created file will work. Maybe you should try to merge the chunks again.")),
+    INVALID_SIZE(N_("Invalid chunk size."),
+            N_("You must specify a size which is lower than the size of the file to split.")),
+    MISSING_CHUNK(N_("Missing chunk."),
+            N_("A chunk appears to be missing. Please check that all chunks are in the same directory."));
 
     /**
      * The message which will be used in the {@link Exception}.
@@ -57,6 +57,14 @@ public enum ExceptionMessage
         this.details = details;
     }
 
+    /**
+     * Mark a <code>message</code> to be extracted for translation, without
+     * translating it.
+     */
+    private static String N_(String message) {
+        return message;
+    }
+
     /**
      * Get the short message of this {@link ExceptionMessage}.
      */
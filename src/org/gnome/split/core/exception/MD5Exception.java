@@ -20,6 +20,9 @@
  */
 package org.gnome.split.core.exception;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Define a new {@link Exception} to manage exceptions due to MD5 sums that
  * differ.
@@ -30,10 +33,32 @@ public final class MD5Exception extends EngineException
 {
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Names of the chunks which do not have the right MD5 sum.
+     */
+    private List<String> chunks;
+
     /**
      * Create an {@link Exception} with an {@link ExceptionMessage} .
      */
     public MD5Exception() {
+        this(new ArrayList<String>());
+    }
+
+    /**
+     * Create an {@link Exception} with an {@link ExceptionMessage} and the
+     * names of the <code>chunks</code> which do not have the right MD5 sum.
+     */
+    public MD5Exception(List<String> chunks) {
         super(ExceptionMessage.MD5_DIFFER, true);
+        this.chunks = chunks;
+    }
+
+    /**
+     * Get the names of the chunks which do not have the right MD5 sum. The
+     * list is empty if the sum covers the whole file.
+     */
+    public List<String> getChunks() {
+        return chunks;
     }
 }
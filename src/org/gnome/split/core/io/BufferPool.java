@@ -0,0 +1,139 @@
+/*
+ * BufferPool.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of {@link ByteBuffer buffers} which can be reused for read/write
+ * operations instead of allocating a new array for each of them. A buffer
+ * must be given back to the pool once it is not used anymore.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class BufferPool
+{
+    /**
+     * Maximum number of buffers kept by a pool.
+     */
+    private static final int MAX_BUFFERS = 16;
+
+    /**
+     * Pool of buffers allocated in the Java heap.
+     */
+    private static final BufferPool heap;
+
+    /**
+     * Pool of buffers allocated outside of the Java heap.
+     */
+    private static final BufferPool direct;
+
+    static {
+        heap = new BufferPool(false);
+        direct = new BufferPool(true);
+    }
+
+    /**
+     * Allocate direct buffers or not.
+     */
+    private final boolean allocateDirect;
+
+    /**
+     * Buffers which are not used at the moment.
+     */
+    private final Queue<ByteBuffer> buffers;
+
+    /**
+     * Number of buffers kept in the queue.
+     */
+    private final AtomicInteger count;
+
+    private BufferPool(boolean allocateDirect) {
+        this.allocateDirect = allocateDirect;
+        this.buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+        this.count = new AtomicInteger(0);
+    }
+
+    /**
+     * Get the pool of buffers backed by an array. The array of a buffer can
+     * be used to read or write data using streams.
+     */
+    public static BufferPool getHeapPool() {
+        return heap;
+    }
+
+    /**
+     * Get the pool of direct buffers. Direct buffers should only be used with
+     * channels.
+     */
+    public static BufferPool getDirectPool() {
+        return direct;
+    }
+
+    /**
+     * Get a buffer which can hold at least <code>size</code> bytes. The
+     * position of the buffer is set to 0, its limit is set to
+     * <code>size</code> and its byte order is big endian.
+     */
+    public ByteBuffer acquire(int size) {
+        ByteBuffer buffer;
+
+        while ((buffer = buffers.poll()) != null) {
+            count.decrementAndGet();
+
+            if (buffer.capacity() >= size) {
+                // Reuse the buffer
+                buffer.clear();
+                buffer.limit(size);
+                buffer.order(ByteOrder.BIG_ENDIAN);
+                return buffer;
+            }
+
+            // The buffer is too small (the buffer size has been changed), so
+            // just drop it
+        }
+
+        // No buffer available, allocate a new one
+        return allocateDirect ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    /**
+     * Give a buffer back to the pool so it can be reused later.
+     */
+    public void release(ByteBuffer buffer) {
+        if ((buffer == null) || (buffer.isDirect() != allocateDirect)) {
+            // Not a buffer from this pool
+            return;
+        }
+
+        if (count.incrementAndGet() <= MAX_BUFFERS) {
+            // Keep the buffer
+            buffers.offer(buffer);
+        } else {
+            // Enough buffers are kept, let this one be collected
+            count.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * ChunkFinder.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Find the chunks of a file in a directory with a single scan, for the
+ * formats which do not store the number of chunks. The chunks are named
+ * with a prefix, a number written with at least a given number of digits
+ * and a suffix. Only the names matching this pattern exactly are kept, so
+ * the other files of a crowded directory are not counted.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class ChunkFinder
+{
+    /**
+     * Characters which have a meaning in a glob pattern.
+     */
+    private static final String GLOB_CHARACTERS = "*?[]{}\\";
+
+    /**
+     * Directory holding the chunks.
+     */
+    private File directory;
+
+    /**
+     * Beginning of the name of each chunk, before its number.
+     */
+    private String prefix;
+
+    /**
+     * End of the name of each chunk, after its number.
+     */
+    private String suffix;
+
+    /**
+     * Minimum number of digits of the numbers, they are padded with zeros.
+     */
+    private int digits;
+
+    /**
+     * The chunks found, from the first one to the last one.
+     */
+    private File[] chunks;
+
+    /**
+     * Number of the first chunk missing before the last one found, or
+     * <code>-1</code> if they all follow each other.
+     */
+    private int missing;
+
+    public ChunkFinder(File directory, String prefix, String suffix, int digits) {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.digits = digits;
+        this.chunks = new File[0];
+        this.missing = -1;
+    }
+
+    /**
+     * Scan the directory once to find the chunks numbered from
+     * <code>first</code>.
+     */
+    public void scan(int first) throws IOException {
+        SortedMap<Integer, File> found = new TreeMap<Integer, File>();
+
+        // Let the directory stream skip the files which can't be chunks
+        String glob = escape(prefix) + "[0-9]*" + escape(suffix);
+        DirectoryStream<Path> stream = Files.newDirectoryStream(directory.toPath(), glob);
+        try {
+            for (Path path : stream) {
+                int number = this.parse(path.getFileName().toString());
+                if (number >= first) {
+                    found.put(number, path.toFile());
+                }
+            }
+        } finally {
+            stream.close();
+        }
+
+        // Keep the chunks in order, and tell if one is missing
+        List<File> list = new ArrayList<File>(found.size());
+        missing = -1;
+        int expected = first;
+        for (Integer number : found.keySet()) {
+            if ((number != expected) && (missing == -1)) {
+                missing = expected;
+            }
+
+            list.add(found.get(number));
+            expected = number + 1;
+        }
+
+        chunks = list.toArray(new File[list.size()]);
+    }
+
+    /**
+     * Get the number of a chunk from its <code>name</code>, or
+     * <code>-1</code> if it is not the name of a chunk.
+     */
+    private int parse(String name) {
+        if (!name.startsWith(prefix) || !name.endsWith(suffix)
+                || (name.length() < (prefix.length() + suffix.length() + digits))) {
+            return -1;
+        }
+
+        String number = name.substring(prefix.length(), name.length() - suffix.length());
+        if (number.length() > 9) {
+            // Far too many chunks
+            return -1;
+        }
+
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if ((c < '0') || (c > '9')) {
+                return -1;
+            }
+        }
+
+        // Only the zeros needed to get the minimum number of digits are
+        // allowed
+        if ((number.length() > digits) && (number.charAt(0) == '0')) {
+            return -1;
+        }
+
+        return Integer.parseInt(number);
+    }
+
+    /**
+     * Escape the characters of a <code>text</code> which have a meaning in a
+     * glob pattern.
+     */
+    private static String escape(String text) {
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (GLOB_CHARACTERS.indexOf(c) >= 0) {
+                builder.append('\\');
+            }
+            builder.append(c);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Get the chunks found by the last scan, in order. If one is missing,
+     * the chunks which follow it are included too.
+     */
+    public File[] getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Get the number of the first chunk missing before the last one found,
+     * or <code>-1</code> if they all follow each other.
+     */
+    public int getMissing() {
+        return missing;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * CopyMode.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core.io;
+
+/**
+ * A class which contains all the ways that can be used to copy data from a
+ * file to another one.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class CopyMode
+{
+    /**
+     * Copy data by reading it into a buffer and writing it back.
+     */
+    public static final int STREAM = 0;
+
+    /**
+     * Copy data from a channel to another one without bringing it into the
+     * Java heap (zero-copy, when the operating system supports it).
+     */
+    public static final int TRANSFER = 1;
+
+    /**
+     * Copy data by mapping windows of both files in memory, so the data is
+     * copied from page cache to page cache.
+     */
+    public static final int MAPPED = 2;
+
+    /**
+     * Check if the mode is a known one.
+     */
+    public static boolean isValid(int mode) {
+        return (mode == STREAM) || (mode == TRANSFER) || (mode == MAPPED);
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Journal.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A small file kept next to the files of an action, recording the parts
+ * which have been fully written. If the action is interrupted (crash, reboot
+ * or cancellation), a new engine can read it and only handle the parts which
+ * are missing instead of starting again. The first line identifies the
+ * action, so a journal is never used for another one. Each part is recorded
+ * by appending a line and syncing the file, so a part is only recorded once
+ * it is on the disk.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class Journal
+{
+    /**
+     * Added to the name of the file to get the name of its journal.
+     */
+    private static final String EXTENSION = ".journal";
+
+    /**
+     * First line of each journal, it changes with its format.
+     */
+    private static final String MAGIC = "GNOME Split journal 1";
+
+    /**
+     * Used to read and write the journal.
+     */
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    /**
+     * The journal file.
+     */
+    private final File file;
+
+    /**
+     * Identifies the action recorded by the journal.
+     */
+    private final String identity;
+
+    /**
+     * Parts read from the journal of a previous run, not checked yet.
+     */
+    private final Map<Integer, Part> recorded;
+
+    /**
+     * Parts which are known to be done.
+     */
+    private final Map<Integer, Part> parts;
+
+    /**
+     * Used to add parts to the journal, <code>null</code> until it is
+     * opened.
+     */
+    private GRandomAccessFile access;
+
+    /**
+     * Create the journal of the <code>path</code> file for the action
+     * described by <code>identity</code> (on a single line).
+     */
+    public Journal(String path, String identity) {
+        this.file = new File(path + EXTENSION);
+        this.identity = identity.replace('\n', ' ');
+        this.recorded = new ConcurrentHashMap<Integer, Part>();
+        this.parts = new ConcurrentHashMap<Integer, Part>();
+        this.access = null;
+    }
+
+    /**
+     * Read the parts recorded by a previous run. Nothing is read if there is
+     * no journal or if it belongs to another action. Broken lines (the last
+     * one can be partly written) are ignored.
+     */
+    public void load() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), CHARSET));
+        try {
+            if (!MAGIC.equals(reader.readLine()) || !identity.equals(reader.readLine())) {
+                // Not the same action
+                return;
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Part part = Part.parse(line);
+                if (part != null) {
+                    // The last record of a part is the right one
+                    recorded.put(part.number, part);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Tell if the part <code>number</code> has been recorded by a previous
+     * run with the same <code>length</code>. If it is the case, it is kept
+     * when the journal is opened, else it will be done again.
+     */
+    public boolean check(int number, long length) {
+        Part part = recorded.remove(number);
+        if ((part == null) || (part.length != length)) {
+            return false;
+        }
+
+        parts.put(number, part);
+        return true;
+    }
+
+    /**
+     * Start recording the parts. The journal is written again with only the
+     * parts which have been checked, then it is replaced at once so it is
+     * never lost.
+     */
+    public synchronized void open() throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        StringBuilder content = new StringBuilder();
+
+        content.append(MAGIC).append('\n');
+        content.append(identity).append('\n');
+        for (Part part : parts.values()) {
+            content.append(part).append('\n');
+        }
+
+        GRandomAccessFile writer = new GRandomAccessFile(temporary, "rw");
+        try {
+            writer.setLength(0);
+            writer.write(content.toString().getBytes(CHARSET));
+            writer.getChannel().force(true);
+        } finally {
+            writer.close();
+        }
+
+        if (!temporary.renameTo(file)) {
+            throw new IOException("Can't write " + file.getPath());
+        }
+
+        access = new GRandomAccessFile(file, "rw");
+        access.seek(access.length());
+    }
+
+    /**
+     * Tell if the part <code>number</code> is already done.
+     */
+    public boolean isComplete(int number) {
+        return parts.containsKey(number);
+    }
+
+    /**
+     * Get the MD5 sum recorded with the part <code>number</code>, or
+     * <code>null</code> if there is none.
+     */
+    public String getSum(int number) {
+        Part part = parts.get(number);
+        return (part == null) ? null : part.sum;
+    }
+
+    /**
+     * Record that the part <code>number</code> is done, with its
+     * <code>length</code> and its MD5 <code>sum</code> (can be
+     * <code>null</code>). The data of the part must already be on the disk.
+     */
+    public synchronized void complete(int number, long length, String sum) throws IOException {
+        Part part = new Part(number, length, sum);
+        parts.put(number, part);
+
+        if (access != null) {
+            access.write((part + "\n").getBytes(CHARSET));
+            access.getChannel().force(true);
+        }
+    }
+
+    /**
+     * Stop recording the parts. The journal is kept so the action can be
+     * resumed.
+     */
+    public synchronized void close() {
+        try {
+            if (access != null) {
+                access.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            access = null;
+        }
+    }
+
+    /**
+     * Close and remove the journal, once the action is done or its files
+     * have been removed.
+     */
+    public void delete() {
+        this.close();
+        file.delete();
+    }
+
+    /**
+     * A part recorded in the journal.
+     * 
+     * @author Guillaume Mazoyer
+     */
+    private static final class Part
+    {
+        private final int number;
+
+        private final long length;
+
+        private final String sum;
+
+        private Part(int number, long length, String sum) {
+            this.number = number;
+            this.length = length;
+            this.sum = sum;
+        }
+
+        /**
+         * Read a part from a <code>line</code> of the journal. It returns
+         * <code>null</code> if the line is broken.
+         */
+        private static Part parse(String line) {
+            String[] fields = line.split(" ");
+            if ((fields.length != 4) || !fields[0].equals("part")) {
+                return null;
+            }
+
+            // A truncated MD5 sum can't be used
+            String sum = fields[3];
+            if (!sum.equals("-") && (sum.length() != 32)) {
+                return null;
+            }
+
+            try {
+                int number = Integer.parseInt(fields[1]);
+                long length = Long.parseLong(fields[2]);
+                return new Part(number, length, sum.equals("-") ? null : sum);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "part " + number + " " + length + " " + ((sum == null) ? "-" : sum);
+        }
+    }
+}
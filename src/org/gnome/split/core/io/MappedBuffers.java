@@ -0,0 +1,91 @@
+/*
+ * MappedBuffers.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core.io;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Release the memory mapping of a {@link MappedByteBuffer} without waiting
+ * for the garbage collector. Java has no public API for this, so the
+ * internal ones of the running JVM are used when they can be found. If they
+ * can't, the mapping is released later by the garbage collector.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class MappedBuffers
+{
+    /**
+     * <code>sun.misc.Unsafe</code> instance (Java 9 and later).
+     */
+    private static Object unsafe;
+
+    /**
+     * <code>Unsafe.invokeCleaner(ByteBuffer)</code> method (Java 9 and
+     * later).
+     */
+    private static Method invokeCleaner;
+
+    static {
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = type.getMethod("invokeCleaner", java.nio.ByteBuffer.class);
+        } catch (Exception e) {
+            // Older JVM
+            unsafe = null;
+            invokeCleaner = null;
+        }
+    }
+
+    private MappedBuffers() {
+        // No instantiation from outside
+    }
+
+    /**
+     * Release the mapping of the <code>buffer</code>. The buffer must not be
+     * used anymore after that.
+     */
+    public static void unmap(MappedByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+
+        try {
+            if (invokeCleaner != null) {
+                invokeCleaner.invoke(unsafe, buffer);
+            } else {
+                // Java 7 and 8
+                Method getCleaner = buffer.getClass().getMethod("cleaner");
+                getCleaner.setAccessible(true);
+                Object cleaner = getCleaner.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (Exception e) {
+            // Let the garbage collector do it
+        }
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Compressed.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core.merger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import org.gnome.split.config.Configuration;
+import org.gnome.split.core.EngineListener;
+import org.gnome.split.core.events.CopyEvent;
+import org.gnome.split.core.io.BufferPool;
+import org.gnome.split.core.io.GRandomAccessFile;
+import org.gnome.split.core.utils.MD5Hasher;
+
+/**
+ * Algorithm to merge files which have been compressed one by one. Each
+ * chunk has its own header, so they can all be uncompressed at the same
+ * time.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class Compressed extends DefaultMergeEngine
+{
+    /**
+     * First bytes of each chunk, they change with the format of the header.
+     */
+    private static final byte[] MAGIC = new byte[] {
+            'G', 'S', 'Z', '1'
+    };
+
+    /**
+     * Position of the compressed data in each chunk.
+     */
+    private long[] starts;
+
+    /**
+     * Length of the data of each chunk once uncompressed.
+     */
+    private long[] lengths;
+
+    /**
+     * Length of the compressed data of each chunk.
+     */
+    private long[] compressed;
+
+    /**
+     * MD5 sum of the compressed data of each chunk.
+     */
+    private String[] md5sums;
+
+    public Compressed(Configuration config, EngineListener engine, File file, String filename) {
+        super(config, engine, file, filename);
+    }
+
+    /**
+     * Read the header of the chunk <code>number</code> and keep what is
+     * needed to merge it. It returns the name of the original file.
+     */
+    private String readPartHeader(File chunk, int number) throws IOException {
+        GRandomAccessFile access = null;
+        try {
+            access = new GRandomAccessFile(chunk, "r");
+
+            byte[] magic = new byte[MAGIC.length];
+            access.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Unknown chunk format: " + chunk.getPath());
+            }
+
+            if (access.readInt() != number) {
+                throw new IOException("Unexpected chunk: " + chunk.getPath());
+            }
+
+            // Number of chunks and length of the original file
+            parts = access.readInt();
+            fileLength = access.readLong();
+
+            // Where the data goes in the file is known from the other chunks
+            access.readLong();
+
+            long length = access.readLong();
+            long size = access.readLong();
+
+            // Read if using MD5, and the sum itself
+            md5 = access.readBoolean();
+            byte[] sum = new byte[32];
+            access.readFully(sum);
+
+            // Read original filename
+            String name = access.readUTF();
+
+            if (starts != null) {
+                starts[number - 1] = access.getFilePointer();
+                lengths[number - 1] = length;
+                compressed[number - 1] = size;
+                md5sums[number - 1] = new String(sum);
+            }
+
+            return name;
+        } finally {
+            try {
+                if (access != null) {
+                    access.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    protected void loadHeaders() throws IOException {
+        String name = this.readPartHeader(file, 1);
+
+        // Update the filename only if it is not specified by the user
+        if (filename == null) {
+            filename = file.getAbsolutePath().replace(file.getName(), "") + name;
+        }
+    }
+
+    @Override
+    protected String getNextChunk(String part, int number) {
+        // Get the current extension
+        String current;
+        if (number >= 100) {
+            current = String.valueOf(number);
+        } else if (number >= 10) {
+            current = "0" + number;
+        } else {
+            current = "00" + number;
+        }
+
+        // Finally
+        return (part + current + ".gsz");
+    }
+
+    @Override
+    protected long getDataStart(int index) {
+        return starts[index - 1];
+    }
+
+    @Override
+    protected long getDataEnd(int index, long length) {
+        return starts[index - 1] + compressed[index - 1];
+    }
+
+    @Override
+    protected long getMergedLength(int index, long length) {
+        return lengths[index - 1];
+    }
+
+    @Override
+    protected boolean useChunkSums() {
+        return config.CHECK_FILE_HASH && md5;
+    }
+
+    @Override
+    protected long getChunkSumStart(int index) {
+        return starts[index - 1];
+    }
+
+    @Override
+    protected String getChunkSum(int index) {
+        return md5sums[index - 1];
+    }
+
+    /**
+     * Read the header of every chunk.
+     */
+    @Override
+    protected void prepareMerge(File[] files) throws IOException {
+        starts = new long[parts];
+        lengths = new long[parts];
+        compressed = new long[parts];
+        md5sums = new String[parts];
+
+        int count = parts;
+        for (int i = 1; i <= count; i++) {
+            this.readPartHeader(files[i - 1], i);
+        }
+
+        if (parts != count) {
+            throw new IOException("Chunks from different files: " + files[0].getPath());
+        }
+    }
+
+    /**
+     * Uncompress the data of the chunk in the merged file, and check that it
+     * has the expected length.
+     */
+    @Override
+    protected boolean readData(String chunk, FileChannel source, int index, long length, FileChannel target,
+            long offset, MD5Hasher chunkHasher) throws IOException {
+        long start = starts[index - 1];
+        long size = compressed[index - 1];
+        int bufferSize = config.BUFFER_SIZE;
+        long read = 0;
+        long written = 0;
+
+        // The data goes through the heap anyway to be uncompressed
+        BufferPool pool = BufferPool.getHeapPool();
+        ByteBuffer input = pool.acquire(bufferSize);
+        ByteBuffer output = pool.acquire(bufferSize);
+        Inflater inflater = new Inflater();
+        CopyEvent event = CopyEvent.start(chunk, "inflate");
+
+        try {
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    if (read >= size) {
+                        throw new ZipException("Truncated data in " + chunk);
+                    }
+
+                    // Read the next compressed data
+                    int count = (int) Math.min(bufferSize, size - read);
+                    input.clear();
+                    input.limit(count);
+
+                    if (!this.read(source, input, start + read)) {
+                        // Stop the current thread
+                        return false;
+                    }
+
+                    inflater.setInput(input.array(), input.arrayOffset(), count);
+                    read += count;
+                }
+
+                int count;
+                try {
+                    count = inflater.inflate(output.array(), output.arrayOffset(), bufferSize);
+                } catch (DataFormatException e) {
+                    throw new ZipException("Invalid data in " + chunk + ": " + e.getMessage());
+                }
+
+                if (inflater.needsDictionary() || ((written + count) > length)) {
+                    throw new ZipException("Invalid data in " + chunk);
+                }
+
+                if (count == 0) {
+                    continue;
+                }
+
+                if (chunkHasher != null) {
+                    // Update the MD5 sum with the same data
+                    chunkHasher.update(output.array(), output.arrayOffset(), count);
+                }
+
+                // Write the uncompressed data
+                output.clear();
+                output.limit(count);
+                if (!this.write(target, output, offset + written)) {
+                    // Stop the current thread
+                    return false;
+                }
+
+                written += count;
+                total.add(count);
+                event = event.update(count);
+            }
+        } finally {
+            // Free the native memory of the inflater
+            inflater.end();
+            pool.release(input);
+            pool.release(output);
+            event.finish();
+        }
+
+        if (written != length) {
+            throw new ZipException("Invalid data in " + chunk);
+        }
+
+        // Success
+        return true;
+    }
+}
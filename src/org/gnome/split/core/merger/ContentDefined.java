@@ -0,0 +1,175 @@
+/*
+ * ContentDefined.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core.merger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.gnome.split.config.Configuration;
+import org.gnome.split.core.EngineListener;
+
+/**
+ * Algorithm to merge files split where their content told to. The chunks
+ * do not have any headers, everything is read from the manifest written
+ * next to them.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class ContentDefined extends DefaultMergeEngine
+{
+    /**
+     * First line of the manifest, it changes with its format.
+     */
+    private static final String MANIFEST_MAGIC = "GNOME Split manifest 1";
+
+    /**
+     * Extension of the manifest and of the chunks.
+     */
+    private static final String EXTENSION = ".cdc";
+
+    /**
+     * Length of the data of each chunk.
+     */
+    private long[] lengths;
+
+    /**
+     * MD5 sum of each chunk, if they have been saved.
+     */
+    private String[] md5sums;
+
+    public ContentDefined(Configuration config, EngineListener engine, File file, String filename) {
+        super(config, engine, file, filename);
+    }
+
+    /**
+     * Get the manifest of the chunks.
+     */
+    private File getManifest() {
+        String path = file.getAbsolutePath();
+        return new File(path.substring(0, path.length() - 8) + EXTENSION);
+    }
+
+    /**
+     * Read the manifest of the chunks.
+     */
+    @Override
+    protected void loadHeaders() throws IOException {
+        File manifest = this.getManifest();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifest),
+                Charset.forName("UTF-8")));
+        try {
+            if (!MANIFEST_MAGIC.equals(reader.readLine())) {
+                throw new IOException("Unknown manifest format: " + manifest.getPath());
+            }
+
+            List<Long> sizes = new ArrayList<Long>();
+            List<String> sums = new ArrayList<String>();
+            String name = null;
+            md5 = true;
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("name ")) {
+                    name = line.substring(5);
+                } else if (line.startsWith("length ")) {
+                    fileLength = Long.parseLong(line.substring(7));
+                } else if (line.startsWith("part ")) {
+                    // Offset, length and MD5 sum of a chunk
+                    String[] fields = line.split(" ");
+                    sizes.add(Long.parseLong(fields[2]));
+                    sums.add(fields[3]);
+                    md5 &= !fields[3].equals("-");
+                }
+            }
+
+            // Update the filename only if it is not specified by the user
+            if (filename == null) {
+                filename = file.getAbsolutePath().replace(file.getName(), "") + name;
+            }
+
+            parts = sizes.size();
+            lengths = new long[parts];
+            md5sums = sums.toArray(new String[parts]);
+            for (int i = 0; i < parts; i++) {
+                lengths[i] = sizes.get(i);
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid manifest: " + manifest.getPath(), e);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Override
+    protected File[] getHeaderFiles() {
+        return new File[] {
+            file, this.getManifest()
+        };
+    }
+
+    @Override
+    protected void copyHeaders(DefaultMergeEngine probe) {
+        super.copyHeaders(probe);
+        ContentDefined other = (ContentDefined) probe;
+        lengths = other.lengths;
+        md5sums = other.md5sums;
+    }
+
+    @Override
+    protected String getNextChunk(String part, int number) {
+        // Get the current extension
+        String current;
+        if (number >= 100) {
+            current = String.valueOf(number);
+        } else if (number >= 10) {
+            current = "0" + number;
+        } else {
+            current = "00" + number;
+        }
+
+        // Finally
+        return (part + current + EXTENSION);
+    }
+
+    @Override
+    protected long getDataEnd(int index, long length) {
+        // A shorter chunk can't be merged, the end of a longer one is not
+        // part of the file
+        return lengths[index - 1];
+    }
+
+    @Override
+    protected boolean useChunkSums() {
+        return config.CHECK_FILE_HASH && md5 && (parts > 0);
+    }
+
+    @Override
+    protected String getChunkSum(int index) {
+        return md5sums[index - 1];
+    }
+}
@@ -21,22 +21,38 @@
 package org.gnome.split.core.merger;
 
 import static org.freedesktop.bindings.Internationalization._;
-import static org.gnome.split.GnomeSplit.config;
-import static org.gnome.split.GnomeSplit.engine;
-import static org.gnome.split.GnomeSplit.openURI;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.Callable;
 
+import org.gnome.split.config.Configuration;
 import org.gnome.split.core.DefaultEngine;
 import org.gnome.split.core.Engine;
+import org.gnome.split.core.EngineListener;
+import org.gnome.split.core.events.CopyEvent;
+import org.gnome.split.core.events.FileEvent;
+import org.gnome.split.core.events.HeaderEvent;
+import org.gnome.split.core.events.MD5Event;
+import org.gnome.split.core.events.PartEvent;
 import org.gnome.split.core.exception.EngineException;
+import org.gnome.split.core.exception.MD5Exception;
+import org.gnome.split.core.exception.MissingChunkException;
+import org.gnome.split.core.io.BufferPool;
+import org.gnome.split.core.io.CopyMode;
 import org.gnome.split.core.io.GRandomAccessFile;
+import org.gnome.split.core.io.Journal;
+import org.gnome.split.core.metrics.EngineMetrics;
 import org.gnome.split.core.utils.Algorithm;
+import org.gnome.split.core.utils.MD5Hasher;
+import org.gnome.split.core.utils.MD5Verifier;
 
 /**
  * Define the model that all merge engines should use.
@@ -45,6 +61,11 @@ import org.gnome.split.core.utils.Algorithm;
  */
 public abstract class DefaultMergeEngine extends DefaultEngine
 {
+    /**
+     * The headers read by the last probes.
+     */
+    private static final HeaderCache probes = new HeaderCache(16);
+
     /**
      * The first part to merge.
      */
@@ -76,19 +97,33 @@ public abstract class DefaultMergeEngine extends DefaultEngine
     protected String md5sum;
 
     /**
-     * A timer to update the progress of the view.
+     * If set, used to calculate the MD5 sum of the data while it is written
+     * in the merged file, so the file does not need to be read again to be
+     * verified.
+     */
+    protected MD5Hasher hasher;
+
+    /**
+     * If set, the merged data is written in this stream instead of the
+     * file, which is then not created.
+     */
+    private WritableByteChannel stream;
+
+    /**
+     * If the headers have been read without any error.
      */
-    private Timer progress;
+    private boolean loaded;
 
     /**
      * Create a new merge {@link Engine engine} using a first
      * <code>file</code> to merge.
      */
-    protected DefaultMergeEngine(File file, String filename) {
-        super();
+    protected DefaultMergeEngine(Configuration config, EngineListener engine, File file, String filename) {
+        super(config, engine);
         this.file = file;
         this.filename = filename;
-        this.progress = null;
+        this.hasher = null;
+        this.stream = null;
 
         if (filename != null) {
             this.directory = filename.substring(0, filename.lastIndexOf(File.separator));
@@ -97,8 +132,20 @@ public abstract class DefaultMergeEngine extends DefaultEngine
         }
 
         try {
-            // Load headers
-            this.loadHeaders();
+            DefaultMergeEngine probe = probes.get(file, this.getClass());
+            if (probe != null) {
+                // The headers have already been read
+                this.copyHeaders(probe);
+            } else {
+                // Load headers
+                long time = metrics.begin();
+                HeaderEvent event = HeaderEvent.start("read", file.getPath());
+                this.loadHeaders();
+                event.commit();
+                metrics.end(EngineMetrics.HEADERS, time);
+            }
+
+            loaded = true;
         } catch (Exception e) {
             // Handle the error
             this.fireEngineError(e);
@@ -108,60 +155,81 @@ public abstract class DefaultMergeEngine extends DefaultEngine
     /**
      * Return the right merger to merge files with right algorithm.
      */
-    public static final DefaultMergeEngine getInstance(File file, String filename) {
+    public static final DefaultMergeEngine getInstance(Configuration config, EngineListener engine, File file,
+            String filename) {
         String name = file.getName();
         String[] extensions = Algorithm.getExtensions();
 
         if (name.endsWith(extensions[0]) || name.endsWith(extensions[1])) {
             // Use Generic algorithm
-            return new Generic(file, filename);
+            return new Generic(config, engine, file, filename);
         }
 
         if (name.endsWith(extensions[2])) {
             // Use GNOME Split algorithm
-            return new GnomeSplit(file, filename);
+            return new GnomeSplit(config, engine, file, filename);
         }
 
         if (name.endsWith(extensions[3]) || name.endsWith(extensions[4])) {
             // Use Xtremsplit algorithm
-            return new Xtremsplit(file, filename);
+            return new Xtremsplit(config, engine, file, filename);
         }
 
         if (name.endsWith(extensions[5])) {
             // Use KFK algorithm
-            return new KFK(file, filename);
+            return new KFK(config, engine, file, filename);
         }
 
         if (name.endsWith(extensions[6])) {
             // Use YoyoCut algorithm
-            return new YoyoCut(file, filename);
+            return new YoyoCut(config, engine, file, filename);
+        }
+
+        if (name.endsWith(extensions[7])) {
+            // Use content defined algorithm
+            return new ContentDefined(config, engine, file, filename);
+        }
+
+        if (name.endsWith(extensions[8])) {
+            // Use compressed algorithm
+            return new Compressed(config, engine, file, filename);
         }
 
         // Can't find the right algorithm
         return null;
     }
 
+    /**
+     * Return the right merger, like
+     * {@link #getInstance(Configuration, EngineListener, File, String)},
+     * to know what the merge of the chunks will be before starting it. The
+     * headers it reads are kept, so the merger created to merge the same
+     * chunks does not read them again, as long as they have not changed.
+     */
+    public static final DefaultMergeEngine probe(Configuration config, EngineListener engine, File file) {
+        DefaultMergeEngine merger = getInstance(config, engine, file, null);
+
+        if ((merger != null) && merger.loaded) {
+            probes.put(file, merger);
+        }
+
+        return merger;
+    }
+
     @Override
     public void run() {
-        synchronized (mutex) {
-            try {
-                // Start the indicators
-                this.startProgressUpdater();
-                this.startSpeedCalculator();
-
-                // Merge files
-                this.merge();
-
-                // Execute action after the merge
-                this.onFinish();
-            } catch (Exception e) {
-                // Handle the error
-                this.fireEngineError(e);
-            } finally {
-                // Stop the indicators
-                this.stopProgressUpdater();
-                this.stopSpeedCalculator();
-            }
+        try {
+            // Start the indicators
+            this.startSampling();
+
+            // Merge files
+            this.merge();
+        } catch (Exception e) {
+            // Handle the error
+            this.fireEngineError(e);
+        } finally {
+            // Stop the indicators
+            this.stopSampling();
         }
     }
 
@@ -175,9 +243,14 @@ public abstract class DefaultMergeEngine extends DefaultEngine
     public void stop(boolean clean) {
         super.stop(clean);
 
-        if (clean) {
+        if (clean && (stream == null)) {
             // Remove the created file
             new File(filename).delete();
+
+            // Nothing is left to resume
+            if (journal != null) {
+                journal.delete();
+            }
         }
     }
 
@@ -191,50 +264,566 @@ public abstract class DefaultMergeEngine extends DefaultEngine
         return fileLength;
     }
 
+    /**
+     * Write the merged data in the <code>stream</code> instead of the file.
+     * The chunks are then merged one after the other, and their MD5 sums
+     * are still verified, but a mismatch can only be reported once the
+     * data has been written. If the format does not store the number of
+     * chunks, the chunks which appear while merging are merged too.
+     */
+    public void setStream(WritableByteChannel stream) {
+        this.stream = stream;
+    }
+
     /**
      * Load the headers of the files to merge.
      */
     protected abstract void loadHeaders() throws IOException;
 
+    /**
+     * Get the files read by {@link #loadHeaders()}. The headers kept after a
+     * probe are only used while none of them has changed. By default, only
+     * the first chunk is read.
+     */
+    protected File[] getHeaderFiles() {
+        return new File[] {
+            file
+        };
+    }
+
+    /**
+     * Copy the headers read by the <code>probe</code>, which is of the same
+     * type and merges the same chunks, instead of loading them.
+     */
+    protected void copyHeaders(DefaultMergeEngine probe) {
+        if (filename == null) {
+            filename = probe.filename;
+        }
+
+        fileLength = probe.fileLength;
+        parts = probe.parts;
+        md5 = probe.md5;
+        md5sum = probe.md5sum;
+    }
+
     /**
      * Get the next name of the file to merge.
      */
     protected abstract String getNextChunk(String part, int number);
 
+    /**
+     * Get the common part of the name of each chunk, which is given to
+     * {@link #getNextChunk(String, int)}.
+     */
+    protected String getChunkPrefix() {
+        return file.getAbsolutePath().substring(0, file.getAbsolutePath().length() - 7);
+    }
+
+    /**
+     * Get the number used in the name of the first chunk.
+     */
+    protected int getFirstChunkNumber() {
+        return 1;
+    }
+
+    /**
+     * Get the offset where the data to merge starts in the chunk
+     * <code>index</code> (starting at 1). It is used to skip the headers.
+     */
+    protected long getDataStart(int index) {
+        return 0;
+    }
+
+    /**
+     * Get the offset where the data to merge ends in the chunk
+     * <code>index</code> (starting at 1), knowing its <code>length</code>.
+     * It is used to skip the MD5 sums stored after the data.
+     */
+    protected long getDataEnd(int index, long length) {
+        return length;
+    }
+
+    /**
+     * Tell if the chunks are only known by looking for them, because the
+     * format does not store their number. By default, it is stored in the
+     * headers.
+     */
+    protected boolean countsChunks() {
+        return false;
+    }
+
+    /**
+     * Get the number of bytes that the chunk <code>index</code> (starting at
+     * 1) gives in the merged file, knowing its <code>length</code>. By
+     * default, it is its data between {@link #getDataStart(int)} and
+     * {@link #getDataEnd(int, long)}.
+     */
+    protected long getMergedLength(int index, long length) {
+        return this.getDataEnd(index, length) - this.getDataStart(index);
+    }
+
+    /**
+     * Write the <code>length</code> bytes that the chunk <code>index</code>
+     * (starting at 1) gives in the merged file, at the <code>offset</code>
+     * position. Only positional writes can be used, so several threads can
+     * use the same channel. If <code>chunkHasher</code> is set, it is
+     * updated with the data. By default, the data of the chunk is copied as
+     * it is. It returns <code>true</code> if the copy was fully performed,
+     * else it returns <code>false</code>.
+     */
+    protected boolean readData(String chunk, FileChannel source, int index, long length, FileChannel target,
+            long offset, MD5Hasher chunkHasher) throws IOException {
+        return this.copy(chunk, source, this.getDataStart(index), length, target, offset, chunkHasher);
+    }
+
+    /**
+     * Tell if the MD5 sum of the whole file should be verified. The sum is
+     * calculated while writing the merged file.
+     */
+    protected boolean useFileSum() {
+        return false;
+    }
+
+    /**
+     * Tell if the MD5 sum of each chunk should be verified. The sums are
+     * checked in the background while the file is merged.
+     */
+    protected boolean useChunkSums() {
+        return false;
+    }
+
+    /**
+     * Get the offset where the data included in the MD5 sum of the chunk
+     * <code>index</code> (starting at 1) starts. The sum ends where the data
+     * to merge ends.
+     */
+    protected long getChunkSumStart(int index) {
+        return 0;
+    }
+
+    /**
+     * Get the MD5 sum expected for the chunk <code>index</code> (starting at
+     * 1).
+     */
+    protected String getChunkSum(int index) {
+        return null;
+    }
+
+    /**
+     * Called once all the chunks are known to exist, before the merge. It
+     * can be used to read the MD5 sums stored in the chunks.
+     */
+    protected void prepareMerge(File[] files) throws IOException {
+
+    }
+
     /**
      * Merge files to get a new one.
      */
-    public abstract void merge() throws IOException, EngineException;
+    public void merge() throws IOException, EngineException {
+        if (stream != null) {
+            // The data is written in order, without any file
+            this.mergeStream();
+            return;
+        }
+
+        // Check that all chunks are here before doing anything
+        File[] files = this.findChunks();
+        long[] offsets = new long[parts + 1];
+
+        // Read the MD5 sums
+        long time = metrics.begin();
+        HeaderEvent headers = HeaderEvent.start("read", file.getPath());
+        this.prepareMerge(files);
+        headers.commit();
+        metrics.end(EngineMetrics.HEADERS, time);
+
+        for (int i = 1; i <= parts; i++) {
+            // Where the data of each chunk goes in the merged file
+            offsets[i] = offsets[i - 1] + this.getMergedLength(i, files[i - 1].length());
+            chunks.add(files[i - 1].getAbsolutePath());
+        }
+
+        if (this.useFileSum()) {
+            // Verify the MD5 sum while writing the final file
+            hasher = new MD5Hasher(config.BUFFER_SIZE);
+            hasher.reset();
+        }
+
+        GRandomAccessFile out = null;
+        MD5Verifier verifier = null;
+
+        if (config.RESUME_JOBS) {
+            // Keep the chunks merged by a previous run
+            this.openJournal(offsets);
+        }
+
+        try {
+            // Open the final file and give it its final size, so each chunk
+            // can be written at its own place
+            time = metrics.begin();
+            FileEvent event = FileEvent.start("open", filename);
+            out = new GRandomAccessFile(filename, "rw");
+            out.setLength(offsets[parts]);
+            event.commit();
+            metrics.end(EngineMetrics.OPEN, time);
+
+            verifier = this.startVerifier(files);
+
+            boolean run;
+            int threads = this.getWorkerThreads();
+            if ((threads > 1) && (parts > 1) && (hasher == null)) {
+                // Write several chunks at the same time (the MD5 sum of the
+                // whole file needs the data in order, so it can't be done in
+                // this case)
+                run = this.mergeParallel(files, offsets, out.getChannel(), Math.min(threads, parts));
+            } else {
+                // Write the chunks one after the other
+                run = this.mergeSequential(files, offsets, out.getChannel());
+            }
+
+            // Reading stopped
+            if (!run) {
+                this.fireEngineStopped();
+                return;
+            }
+
+            // Check the MD5 sums and notify the end
+            this.endMerge(verifier);
+        } finally {
+            if (verifier != null) {
+                // Do not keep checking if the merge has been interrupted
+                verifier.cancel();
+            }
+
+            if (journal != null) {
+                journal.close();
+            }
+
+            time = metrics.begin();
+            FileEvent event = FileEvent.start("close", filename);
+            try {
+                // Close the final file
+                if (out != null) {
+                    out.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            event.commit();
+            metrics.end(EngineMetrics.CLOSE, time);
+        }
+    }
 
     /**
-     * Executed at the end of a successful merge.
+     * Merge all the chunks one after the other in the stream. If the format
+     * counts its chunks, the next ones are looked for while merging.
      */
-    private void onFinish() {
-        if (config.OPEN_FILE_AT_END) {
-            // Open the created file if requested
-            openURI("file://" + filename);
+    private void mergeStream() throws IOException, EngineException {
+        boolean lookup = this.countsChunks();
+        File[] files = this.findChunks();
+        long[] offsets = new long[files.length + 1];
+
+        // Read the MD5 sums
+        long time = metrics.begin();
+        HeaderEvent headers = HeaderEvent.start("read", file.getPath());
+        this.prepareMerge(files);
+        headers.commit();
+        metrics.end(EngineMetrics.HEADERS, time);
+
+        if (this.useFileSum()) {
+            // Verify the MD5 sum while writing the data
+            hasher = new MD5Hasher(config.BUFFER_SIZE);
+            hasher.reset();
         }
+
+        MD5Verifier verifier = lookup ? null : this.startVerifier(files);
+        try {
+            String part = this.getChunkPrefix();
+            int first = this.getFirstChunkNumber();
+
+            for (int i = 1; lookup || (i <= files.length); i++) {
+                if (i > files.length) {
+                    File next = new File(this.getNextChunk(part, first + i - 1));
+                    if (!next.exists()) {
+                        // No more chunks
+                        break;
+                    }
+
+                    files = Arrays.copyOf(files, i);
+                    files[i - 1] = next;
+                    offsets = Arrays.copyOf(offsets, i + 1);
+                }
+
+                // Where the data of the chunk goes in the merged data
+                offsets[i] = offsets[i - 1] + this.getMergedLength(i, files[i - 1].length());
+                chunks.add(files[i - 1].getAbsolutePath());
+
+                // There is no file, the data goes in the stream
+                if (!this.mergePart(files, offsets, i, null, hasher)) {
+                    this.fireEngineStopped();
+                    return;
+                }
+            }
+
+            if (lookup) {
+                // All the chunks are known now
+                parts = files.length;
+                fileLength = offsets[parts];
+                verifier = this.startVerifier(files);
+            }
+
+            // Check the MD5 sums and notify the end
+            this.endMerge(verifier);
+        } finally {
+            if (verifier != null) {
+                // Do not keep checking if the merge has been interrupted
+                verifier.cancel();
+            }
+        }
+    }
+
+    /**
+     * Start checking the MD5 sums of the chunks in the background, if the
+     * format stores them. They do not depend on the merged file.
+     */
+    private MD5Verifier startVerifier(File[] files) {
+        if (!this.useChunkSums() || (parts == 0)) {
+            return null;
+        }
+
+        int threads = Math.min(parts, Runtime.getRuntime().availableProcessors());
+        MD5Verifier verifier = new MD5Verifier(threads, config.BUFFER_SIZE);
+
+        for (int i = 1; i <= parts; i++) {
+            long end = this.getDataEnd(i, files[i - 1].length());
+            verifier.verify(files[i - 1], this.getChunkSumStart(i), end, this.getChunkSum(i));
+        }
+
+        return verifier;
+    }
+
+    /**
+     * Wait for the MD5 sums of the chunks to be checked, compare the MD5 sum
+     * of the merged data and notify the end of the merge.
+     */
+    private void endMerge(MD5Verifier verifier) throws EngineException {
+        List<String> mismatches = new ArrayList<String>();
+        if (verifier != null) {
+            try {
+                // Wait for the last MD5 sums to be checked
+                this.fireMD5SumStarted();
+                long time = metrics.begin();
+                MD5Event wait = MD5Event.start("wait", filename);
+                mismatches = verifier.getMismatches(cancellation);
+                wait.valid = mismatches.isEmpty();
+                wait.commit();
+                metrics.end(EngineMetrics.HASH, time);
+            } catch (InterruptedException e) {
+                throw new EngineException(e);
+            } finally {
+                this.fireMD5SumEnded();
+            }
+
+            // Stopped while checking
+            if (this.isStopped()) {
+                this.fireEngineStopped();
+                return;
+            }
+        }
+
+        // MD5 are different (the MD5 of the new file has been calculated
+        // while writing it)
+        boolean success = mismatches.isEmpty();
+        if (hasher != null) {
+            long time = metrics.begin();
+            if (!md5sum.equalsIgnoreCase(hasher.digestToString())) {
+                success = false;
+            }
+            metrics.end(EngineMetrics.HASH, time);
+        }
+
+        if (journal != null) {
+            // The merge does not need to be resumed anymore
+            journal.delete();
+        }
+
+        if (!success) {
+            // Notify the error. It's just a warning so we don't throw it.
+            this.fireEngineError(new MD5Exception(mismatches));
+        } else {
+            if (config.DELETE_PARTS && md5) {
+                // Delete all parts if and *only if* the MD5 sums are
+                // equals
+                for (String path : chunks) {
+                    new File(path).delete();
+                }
+            }
+
+            // Notify the end
+            this.fireEngineEnded();
+        }
+    }
+
+    /**
+     * Read the journal of a previous run of the same merge, knowing where
+     * the data of each chunk goes (<code>offsets</code>). The merged file
+     * must still have its final size to keep what it holds.
+     */
+    private void openJournal(long[] offsets) throws IOException {
+        journal = new Journal(filename, "merge " + file.getAbsolutePath() + " " + parts + " " + offsets[parts]);
+
+        if (new File(filename).length() == offsets[parts]) {
+            journal.load();
+        }
+
+        for (int i = 1; i <= parts; i++) {
+            journal.check(i, offsets[i] - offsets[i - 1]);
+        }
+
+        journal.open();
+    }
+
+    /**
+     * Get all the chunks to merge. A missing chunk is reported before
+     * anything is written. By default, each chunk is looked for using its
+     * name.
+     */
+    protected File[] findChunks() throws MissingChunkException {
+        String part = this.getChunkPrefix();
+        int first = this.getFirstChunkNumber();
+        File[] files = new File[parts];
+
+        for (int i = 0; i < parts; i++) {
+            files[i] = new File(this.getNextChunk(part, first + i));
+            if (!files[i].exists()) {
+                // Check if the chunk really exists
+                throw new MissingChunkException();
+            }
+        }
+
+        return files;
+    }
+
+    /**
+     * Merge all the chunks one after the other. It returns <code>true</code>
+     * if the merge was fully performed, else it returns <code>false</code>.
+     */
+    private boolean mergeSequential(File[] files, long[] offsets, FileChannel target) throws IOException {
+        for (int i = 1; i <= parts; i++) {
+            if (!this.mergePart(files, offsets, i, target, hasher)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Merge all the chunks using several threads. Each chunk is written at
+     * its own offset in the merged file using positional writes. It returns
+     * <code>true</code> if the merge was fully performed, else it returns
+     * <code>false</code>.
+     */
+    private boolean mergeParallel(final File[] files, final long[] offsets, final FileChannel target, int threads)
+            throws IOException {
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i = 1; i <= parts; i++) {
+            final int index = i;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    mergePart(files, offsets, index, target, null);
+                    return null;
+                }
+            });
+        }
+
+        // Merge the chunks
+        this.runWorkers(tasks, threads, "Merge worker");
+
+        return !this.isStopped();
     }
 
     /**
-     * Start the progress updater which should notify the view from the
-     * progress of the action.
+     * Copy the data of the chunk <code>index</code> (starting at 1) at its
+     * offset in the merged file. If <code>chunkHasher</code> is set, it is
+     * updated with the data. It returns <code>true</code> if the copy was
+     * fully performed, else it returns <code>false</code>.
      */
-    private void startProgressUpdater() {
-        // Create a new timer and start its task
-        progress = new Timer("Progress updater");
-        progress.scheduleAtFixedRate(new ProgressUpdaterTask(), 1, 250);
+    private boolean mergePart(File[] files, long[] offsets, int index, FileChannel target, MD5Hasher chunkHasher)
+            throws IOException {
+        if ((journal != null) && journal.isComplete(index)) {
+            // Merged by a previous run, the MD5 sum of the whole file still
+            // needs its data so it is read again from the merged file
+            this.fireEnginePartRead(files[index - 1].getName());
+            return this.skip(target, offsets[index - 1], offsets[index] - offsets[index - 1], chunkHasher);
+        }
+
+        File chunk = files[index - 1];
+        GRandomAccessFile access = null;
+        long start = metrics.startPart(index);
+        PartEvent part = PartEvent.start("read", chunk.getPath(), index);
+        try {
+            // Open the chunk to read it
+            FileEvent event = FileEvent.start("open", chunk.getPath());
+            access = new GRandomAccessFile(chunk, "r");
+            event.commit();
+            metrics.end(EngineMetrics.OPEN, start);
+
+            // Notify the view from a new part read
+            this.fireEnginePartRead(chunk.getName());
+
+            long length = offsets[index] - offsets[index - 1];
+            part.bytes = length;
+
+            // Merge the file
+            if (!this.readData(chunk.getPath(), access.getChannel(), index, length, target, offsets[index - 1],
+                    chunkHasher)) {
+                return false;
+            }
+
+            if (journal != null) {
+                // The data must be on the disk before it is recorded
+                target.force(true);
+            }
+            part.completed = true;
+        } finally {
+            long time = metrics.begin();
+            FileEvent event = FileEvent.start("close", chunk.getPath());
+            try {
+                // Close the part
+                if (access != null) {
+                    access.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            event.commit();
+            metrics.end(EngineMetrics.CLOSE, time);
+            part.commit();
+        }
+
+        if (journal != null) {
+            // Do not merge the chunk again if the merge is resumed
+            journal.complete(index, offsets[index] - offsets[index - 1], null);
+        }
+
+        metrics.endPart(index, start);
+        return true;
     }
 
     /**
-     * Stop the progress updater.
+     * When the merged data goes in a stream, it is written in order so the
+     * <code>position</code> is not needed.
      */
-    private void stopProgressUpdater() {
-        // Stop the timer
-        if (progress != null) {
-            progress.cancel();
-            progress = null;
+    @Override
+    protected boolean write(FileChannel target, ByteBuffer buffer, long position) throws IOException {
+        if (stream != null) {
+            return this.write(stream, buffer);
         }
+
+        return super.write(target, buffer, position);
     }
 
     /**
@@ -248,7 +837,7 @@ public abstract class DefaultMergeEngine extends DefaultEngine
      * Notify the view that the MD5 sum calculation has started.
      */
     protected void fireMD5SumStarted() {
-        this.stopProgressUpdater();
+        hashing = true;
         engine.engineMD5SumStarted();
     }
 
@@ -256,7 +845,7 @@ public abstract class DefaultMergeEngine extends DefaultEngine
      * Notify the view that the MD5 sum calculation has ended.
      */
     protected void fireMD5SumEnded() {
-        this.startProgressUpdater();
+        hashing = false;
         engine.engineMD5SumEnded();
     }
 
@@ -286,52 +875,124 @@ public abstract class DefaultMergeEngine extends DefaultEngine
     }
 
     /**
-     * Notify the view that a part of the file has been read.
+     * Copy <code>length</code> bytes of a chunk, starting at
+     * <code>start</code>, in the merged file at the <code>offset</code>
+     * position. Only positional writes are used, so several threads can use
+     * the same channel. The copy is recorded for the <code>chunk</code>. It
+     * returns <code>true</code> if the copy was fully performed, else it
+     * returns <code>false</code>.
      */
-    protected void fireEngineDone(long done, long total) {
-        engine.engineDone(done, total);
-    }
+    private boolean copy(String chunk, FileChannel source, long start, long length, FileChannel target,
+            long offset, MD5Hasher chunkHasher) throws IOException {
+        if ((config.COPY_MODE == CopyMode.TRANSFER) && (chunkHasher == null)) {
+            // Let the system copy the data for us (not possible if the data
+            // has to be read to verify the MD5 sum)
+            return this.transfer(chunk, source, start, length, target, offset);
+        }
 
-    /**
-     * Merge a chunk into another file by copying its content. The
-     * <code>read</code> parameter is used to know how many bytes have been
-     * already read. The <code>length</code> parameter is used to know the
-     * maximum number of bytes that can be read. It returns <code>true</code>
-     * if the reading was fully performed, else it returns <code>false</code>.
-     */
-    protected boolean mergeChunk(GRandomAccessFile merge, GRandomAccessFile chunk, long read, long length)
-            throws IOException {
-        // Setup the buffer
+        if ((config.COPY_MODE == CopyMode.MAPPED) && (stream == null)) {
+            // Copy the data using memory mapped windows of both files (a
+            // stream can't be mapped)
+            return this.mapCopy(chunk, source, start, length, target, offset, chunkHasher);
+        }
+
+        // Needed variables to know when the copy must be stopped
         int bufferSize = config.BUFFER_SIZE;
-        byte[] buffer = null;
-
-        // Merge the file
-        while (read < length) {
-            if (paused) {
-                try {
-                    // Pause the current thread
-                    mutex.wait();
-                } catch (InterruptedException e) {
-                    // Drop the exception
+        long read = 0;
+
+        // Reuse a buffer instead of allocating one for each read, the MD5
+        // sum can only be calculated with a buffer backed by an array
+        BufferPool pool = (chunkHasher != null) ? BufferPool.getHeapPool() : BufferPool.getDirectPool();
+        ByteBuffer buffer = pool.acquire(bufferSize);
+        CopyEvent event = CopyEvent.start(chunk, "stream");
+
+        try {
+            while (read < length) {
+                // Define how many bytes to copy
+                int count = (bufferSize > (length - read)) ? (int) (length - read) : bufferSize;
+                buffer.clear();
+                buffer.limit(count);
+
+                // Read data (a short chunk throws an EOFException)
+                if (!this.read(source, buffer, start + read)) {
+                    // Stop the current thread
+                    return false;
                 }
-            }
 
-            if (stopped) {
-                // Stop the current thread
-                this.fireEngineStopped();
-                return false;
+                if (chunkHasher != null) {
+                    // Update the MD5 sum with the same data
+                    long time = metrics.begin();
+                    chunkHasher.update(buffer.array(), 0, count);
+                    metrics.end(EngineMetrics.HASH, time);
+                }
+
+                // Write data
+                buffer.flip();
+                if (!this.write(target, buffer, offset + read)) {
+                    // Stop the current thread
+                    return false;
+                }
+
+                // Update read and write status
+                read += count;
+                total.add(count);
+                event = event.update(count);
             }
+        } finally {
+            // Give the buffer back
+            pool.release(buffer);
+            event.finish();
+        }
+
+        // Success
+        return true;
+    }
+
+    /**
+     * Copy a part of a chunk by transferring it directly into the merged
+     * file. The data does not go through the Java heap so the kernel can use
+     * a zero-copy transfer. The copy is done by slices so the action can
+     * still be paused or stopped. The copy is recorded for the
+     * <code>chunk</code>. It returns <code>true</code> if the copy was fully
+     * performed, else it returns <code>false</code>.
+     */
+    private boolean transfer(String chunk, FileChannel source, long start, long length, FileChannel target,
+            long offset) throws IOException {
+        long read = 0;
 
-            // Define a new buffer size
-            buffer = new byte[(bufferSize > (length - read) ? (int) (length - read) : bufferSize)];
+        // The transfer reads the chunk from its current position
+        source.position(start);
+
+        CopyEvent event = CopyEvent.start(chunk, "transfer");
+        try {
+            while (read < length) {
+                if (!this.waitIfPaused()) {
+                    // Stop the current thread
+                    return false;
+                }
 
-            // Read and write data
-            chunk.read(buffer);
-            merge.write(buffer);
+                // Transfer a slice of data (may be less than requested)
+                long time = metrics.begin();
+                long transferred;
+                if (stream != null) {
+                    // The data goes in order in the stream
+                    transferred = source.transferTo(start + read, Math.min(SLICE, length - read), stream);
+                } else {
+                    transferred = target.transferFrom(source, offset + read, Math.min(SLICE, length - read));
+                }
+                metrics.endWrite(time);
+                if (transferred <= 0) {
+                    // The chunk is shorter than expected
+                    throw new EOFException();
+                }
 
-            // Update read and write status
-            read += buffer.length;
-            total += buffer.length;
+                // Update read and write status
+                read += transferred;
+                total.add(transferred);
+                event = event.update(transferred);
+            }
+        } finally {
+            event.finish();
         }
 
         // Success
@@ -352,21 +1013,4 @@ public abstract class DefaultMergeEngine extends DefaultEngine
     public boolean useMD5() {
         return md5;
     }
-
-    /**
-     * A class that notify the view from the progress of the action.
-     * 
-     * @author Guillaume Mazoyer
-     */
-    private class ProgressUpdaterTask extends TimerTask
-    {
-        private ProgressUpdaterTask() {
-
-        }
-
-        @Override
-        public void run() {
-            fireEngineDone(total, fileLength);
-        }
-    }
 }
@@ -23,9 +23,10 @@ package org.gnome.split.core.merger;
 import java.io.File;
 import java.io.IOException;
 
-import org.gnome.split.core.exception.EngineException;
+import org.gnome.split.config.Configuration;
+import org.gnome.split.core.EngineListener;
 import org.gnome.split.core.exception.MissingChunkException;
-import org.gnome.split.core.io.GRandomAccessFile;
+import org.gnome.split.core.io.ChunkFinder;
 
 /**
  * Algorithm to merge files with an algorithm which does not use any headers
@@ -35,8 +36,13 @@ import org.gnome.split.core.io.GRandomAccessFile;
  */
 public final class Generic extends DefaultMergeEngine
 {
-    public Generic(File file, String filename) {
-        super(file, filename);
+    /**
+     * The chunks found next to the first one.
+     */
+    private ChunkFinder finder;
+
+    public Generic(Configuration config, EngineListener engine, File file, String filename) {
+        super(config, engine, file, filename);
     }
 
     @Override
@@ -50,27 +56,47 @@ public final class Generic extends DefaultMergeEngine
         // We do not use an MD5 sum
         md5 = false;
 
-        // Setup to found chunks to merge
-        String directory = file.getAbsolutePath().replace(file.getName(), "");
+        // The number of chunks is not stored anywhere, so look for all of
+        // them at once
         String name = file.getName();
-
-        // Get all the files of the directory
-        File[] files = new File(directory).listFiles();
+        finder = new ChunkFinder(file.getAbsoluteFile().getParentFile(), name.substring(0, name.length() - 3), "",
+                3);
+        finder.scan(this.getFirstChunkNumber());
 
         // Setup default values
-        parts = 0;
+        parts = finder.getChunks().length;
         fileLength = 0;
 
-        for (File chunk : files) {
-            boolean valid = chunk.getName().contains(name.substring(0, name.lastIndexOf('.')));
-            if (!chunk.isDirectory() && valid) {
-                // Increase the number of chunks
-                parts++;
+        // Calculate the length
+        for (File chunk : finder.getChunks()) {
+            fileLength += chunk.length();
+        }
+    }
 
-                // Update the size
-                fileLength += chunk.length();
-            }
+    @Override
+    protected File[] findChunks() throws MissingChunkException {
+        if (finder.getMissing() != -1) {
+            // A chunk is missing before the last one
+            throw new MissingChunkException();
         }
+
+        return finder.getChunks();
+    }
+
+    @Override
+    protected boolean countsChunks() {
+        return true;
+    }
+
+    @Override
+    protected File[] getHeaderFiles() {
+        return finder.getChunks();
+    }
+
+    @Override
+    protected void copyHeaders(DefaultMergeEngine probe) {
+        super.copyHeaders(probe);
+        finder = ((Generic) probe).finder;
     }
 
     @Override
@@ -90,64 +116,12 @@ public final class Generic extends DefaultMergeEngine
     }
 
     @Override
-    public void merge() throws IOException, EngineException {
-        String part = file.getAbsolutePath().substring(0, file.getAbsolutePath().length() - 3);
-        GRandomAccessFile out = null;
-        File chunk = null;
-        boolean run = true;
-
-        try {
-            // Open the final file
-            out = new GRandomAccessFile(filename, "rw");
-
-            // We assume that there is at least one part (which is kinda
-            // ridiculous, but still...). We'll do some tricks to find out
-            // which files we have to merge
-            parts = file.getName().endsWith(".000") ? 0 : 1;
-
-            for (int i = parts; i <= parts; i++) {
-                // Next chunk
-                chunk = new File(this.getNextChunk(part, i));
-                if (!chunk.exists()) {
-                    // Check if the chunk really exists
-                    throw new MissingChunkException();
-                }
-
-                // Open the chunk to read it
-                GRandomAccessFile access = new GRandomAccessFile(chunk, "r");
-
-                // Notify the view from a new part read
-                this.fireEnginePartRead(chunk.getName());
-
-                // Merge the file
-                run = this.mergeChunk(out, access, 0, access.length());
-
-                // Reading stopped
-                if (!run) {
-                    return;
-                }
-
-                // Add the part the full read parts
-                chunks.add(chunk.getAbsolutePath());
-
-                // Close the part
-                access.close();
-
-                // Lets find out if there is one more part
-                if (new File(this.getNextChunk(part, (i + 1))).exists()) {
-                    parts++;
-                }
-            }
-
-            // Notify the end
-            this.fireEngineEnded();
-        } finally {
-            try {
-                // Close the final file
-                out.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+    protected String getChunkPrefix() {
+        return file.getAbsolutePath().substring(0, file.getAbsolutePath().length() - 3);
+    }
+
+    @Override
+    protected int getFirstChunkNumber() {
+        return file.getName().endsWith(".000") ? 0 : 1;
     }
 }
@@ -20,16 +20,14 @@
  */
 package org.gnome.split.core.merger;
 
-import static org.gnome.split.GnomeSplit.config;
-
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
-import org.gnome.split.core.exception.EngineException;
-import org.gnome.split.core.exception.MD5Exception;
-import org.gnome.split.core.exception.MissingChunkException;
+import org.gnome.split.config.Configuration;
+import org.gnome.split.core.EngineListener;
+import org.gnome.split.core.io.BufferPool;
 import org.gnome.split.core.io.GRandomAccessFile;
-import org.gnome.split.core.utils.MD5Hasher;
 
 /**
  * Algorithm to merge files with the GNOME Split algorithm.
@@ -38,24 +36,30 @@ import org.gnome.split.core.utils.MD5Hasher;
  */
 public final class GnomeSplit extends DefaultMergeEngine
 {
-    public GnomeSplit(File file, String filename) {
-        super(file, filename);
+    public GnomeSplit(Configuration config, EngineListener engine, File file, String filename) {
+        super(config, engine, file, filename);
     }
 
     @Override
     protected void loadHeaders() throws IOException {
         GRandomAccessFile access = null;
+        ByteBuffer header = null;
         try {
             // Open the first part to merge
             access = new GRandomAccessFile(file, "r");
 
+            // Read the whole header at once
+            header = BufferPool.getHeapPool().acquire(Math.max(config.BUFFER_SIZE, 69));
+            access.readFully(header.array(), 0, 69);
+            header.limit(69);
+
             // Skip useless header
-            access.skipBytes(5);
+            header.position(5);
 
-            // Read filename
-            byte[] bytes = new byte[access.read()];
-            access.read(bytes);
-            access.skipBytes(50 - bytes.length);
+            // Read filename (the name is truncated to 50 bytes)
+            byte[] bytes = new byte[Math.min(header.get() & 0xFF, 50)];
+            header.get(bytes);
+            header.position(56);
 
             // Update the filename only if it is not specified by the user
             if (filename == null) {
@@ -63,16 +67,19 @@ public final class GnomeSplit extends DefaultMergeEngine
             }
 
             // Read if MD5 is used
-            md5 = access.readBoolean();
+            md5 = (header.get() != 0);
 
             // Read file number
-            parts = access.readInt();
+            parts = header.getInt();
 
             // Read file length
-            fileLength = access.readLong();
+            fileLength = header.getLong();
         } catch (IOException e) {
             throw e;
         } finally {
+            // Give the buffer back
+            BufferPool.getHeapPool().release(header);
+
             try {
                 access.close();
             } catch (IOException e) {
@@ -98,102 +105,38 @@ public final class GnomeSplit extends DefaultMergeEngine
     }
 
     @Override
-    public void merge() throws IOException, EngineException {
-        String part = file.getAbsolutePath().substring(0, file.getAbsolutePath().length() - 7);
-        GRandomAccessFile out = null;
-        File chunk = null;
-        boolean run = true;
-        boolean success = true;
+    protected long getDataStart(int index) {
+        // Skip headers if it is the first part
+        return (index == 1) ? 69 : 0;
+    }
 
-        try {
-            // Open the final file
-            out = new GRandomAccessFile(filename, "rw");
-
-            // Define the buffer size
-            byte[] buffer;
-
-            for (int i = 1; i <= parts; i++) {
-                // Next chunk
-                chunk = new File(this.getNextChunk(part, i));
-                if (!chunk.exists()) {
-                    // Check if the chunk really exists
-                    throw new MissingChunkException();
-                }
-
-                // Open the chunk to read it
-                GRandomAccessFile access = new GRandomAccessFile(chunk, "r");
-
-                // Notify the view from a new part read
-                this.fireEnginePartRead(chunk.getName());
-
-                long read = 0;
-                long length = access.length();
-                if (i == 1) {
-                    // Skip headers if it is the first part
-                    access.skipBytes(69);
-                    read += 69;
-                } else if (md5 && (i == parts)) {
-                    // Skip the MD5 sum if it is the last part
-                    length -= 32;
-                }
-
-                // Merge the file
-                run = this.mergeChunk(out, access, read, length);
-
-                // Reading stopped
-                if (!run) {
-                    return;
-                }
-
-                if (config.CHECK_FILE_HASH && md5 && (i == parts)) {
-                    // Read the MD5 which was calculated during the split
-                    buffer = new byte[32];
-                    access.read(buffer);
-                    md5sum = new String(buffer);
-
-                    // Notify the view
-                    this.fireMD5SumStarted();
-
-                    // Calculate the MD5 of the new file
-                    MD5Hasher hasher = new MD5Hasher();
-                    String found = hasher.hashToString(new File(filename));
-
-                    // MD5 are different
-                    success = md5sum.equals(found);
-
-                    // Notify the view again
-                    this.fireMD5SumEnded();
-                }
-
-                // Add the part the full read parts
-                chunks.add(chunk.getAbsolutePath());
-
-                // Close the part
-                access.close();
-            }
+    @Override
+    protected long getDataEnd(int index, long length) {
+        // Skip the MD5 sum if it is the last part
+        return (md5 && (index == parts)) ? (length - 32) : length;
+    }
 
-            if (!success && md5) {
-                // Notify the error. It's just a warning so we don't throw it.
-                this.fireEngineError(new MD5Exception());
-            } else if (success) {
-                if (config.DELETE_PARTS && md5) {
-                    // Delete all parts if and *only if* the MD5 sums are
-                    // equals
-                    for (String path : chunks) {
-                        new File(path).delete();
-                    }
-                }
-
-                // Notify the end
-                this.fireEngineEnded();
-            }
+    @Override
+    protected boolean useFileSum() {
+        return config.CHECK_FILE_HASH && md5;
+    }
+
+    @Override
+    protected void prepareMerge(File[] files) throws IOException {
+        if (!this.useFileSum()) {
+            return;
+        }
+
+        // Read the MD5 which was calculated during the split, at the end of
+        // the last part
+        GRandomAccessFile access = new GRandomAccessFile(files[parts - 1], "r");
+        try {
+            byte[] buffer = new byte[32];
+            access.seek(access.length() - 32);
+            access.readFully(buffer);
+            md5sum = new String(buffer);
         } finally {
-            try {
-                // Close the final file
-                out.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            access.close();
         }
     }
 }
@@ -0,0 +1,151 @@
+/*
+ * HeaderCache.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core.merger;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keep the mergers which have read the headers of some chunks, so a merger
+ * created later for the same chunks can copy their headers instead of
+ * reading them again. A merger is only given back while the files it read
+ * (see {@link DefaultMergeEngine#getHeaderFiles()}) and the directory of
+ * the chunks have not been changed.
+ * 
+ * @author Guillaume Mazoyer
+ */
+final class HeaderCache
+{
+    /**
+     * The mergers, the least recently used first.
+     */
+    private final Map<String, Entry> entries;
+
+    /**
+     * Create a cache which keeps the headers of at most <code>size</code>
+     * sets of chunks.
+     */
+    HeaderCache(final int size) {
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return (this.size() > size);
+            }
+        };
+    }
+
+    /**
+     * Keep the <code>merger</code> which has read the headers of the chunks
+     * starting with the <code>file</code>.
+     */
+    synchronized void put(File file, DefaultMergeEngine merger) {
+        entries.put(file.getAbsolutePath(), new Entry(file, merger));
+    }
+
+    /**
+     * Get the merger of the given <code>type</code> which has read the
+     * headers of the chunks starting with the <code>file</code>, or
+     * <code>null</code> if they have not been read or have changed since.
+     */
+    synchronized DefaultMergeEngine get(File file, Class<?> type) {
+        String path = file.getAbsolutePath();
+        Entry entry = entries.get(path);
+
+        if (entry == null) {
+            return null;
+        }
+
+        if (!entry.matches(file) || (entry.merger.getClass() != type)) {
+            // The headers have to be read again
+            entries.remove(path);
+            return null;
+        }
+
+        return entry.merger;
+    }
+
+    /**
+     * A merger with the state of the files it read when it loaded the
+     * headers.
+     */
+    private static final class Entry
+    {
+        /**
+         * The merger which has read the headers.
+         */
+        private final DefaultMergeEngine merger;
+
+        /**
+         * The files read to load the headers.
+         */
+        private final File[] files;
+
+        /**
+         * The length of each file.
+         */
+        private final long[] lengths;
+
+        /**
+         * The last modification time of each file.
+         */
+        private final long[] modified;
+
+        /**
+         * The last modification time of the directory of the chunks.
+         */
+        private final long directory;
+
+        private Entry(File file, DefaultMergeEngine merger) {
+            this.merger = merger;
+            this.files = merger.getHeaderFiles();
+            this.lengths = new long[files.length];
+            this.modified = new long[files.length];
+            this.directory = file.getAbsoluteFile().getParentFile().lastModified();
+
+            for (int i = 0; i < files.length; i++) {
+                lengths[i] = files[i].length();
+                modified[i] = files[i].lastModified();
+            }
+        }
+
+        /**
+         * Tell if the directory of the <code>file</code> and the files read
+         * to load the headers are the same as when the headers were read.
+         * The directory is changed when a chunk is added or removed.
+         */
+        private boolean matches(File file) {
+            if (file.getAbsoluteFile().getParentFile().lastModified() != directory) {
+                return false;
+            }
+
+            for (int i = 0; i < files.length; i++) {
+                if ((files[i].length() != lengths[i]) || (files[i].lastModified() != modified[i])) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
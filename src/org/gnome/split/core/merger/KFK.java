@@ -23,9 +23,10 @@ package org.gnome.split.core.merger;
 import java.io.File;
 import java.io.IOException;
 
-import org.gnome.split.core.exception.EngineException;
+import org.gnome.split.config.Configuration;
+import org.gnome.split.core.EngineListener;
 import org.gnome.split.core.exception.MissingChunkException;
-import org.gnome.split.core.io.GRandomAccessFile;
+import org.gnome.split.core.io.ChunkFinder;
 
 /**
  * Algorithm to merge files with the KFK algorithm.
@@ -34,14 +35,18 @@ import org.gnome.split.core.io.GRandomAccessFile;
  */
 public final class KFK extends DefaultMergeEngine
 {
-    public KFK(File file, String filename) {
-        super(file, filename);
+    /**
+     * The chunks found next to the first one.
+     */
+    private ChunkFinder finder;
+
+    public KFK(Configuration config, EngineListener engine, File file, String filename) {
+        super(config, engine, file, filename);
     }
 
     @Override
     protected void loadHeaders() throws IOException {
         String name = file.getName();
-        File[] files = new File(file.getAbsolutePath().replace(name, "")).listFiles();
 
         // Get the common part of the name of each chunk
         name = name.substring(0, name.lastIndexOf("."));
@@ -51,20 +56,44 @@ public final class KFK extends DefaultMergeEngine
             filename = file.getAbsolutePath().replace(file.getName(), "") + name;
         }
 
+        // Find all the chunks at once
+        finder = new ChunkFinder(file.getAbsoluteFile().getParentFile(), name + ".kk", "", 1);
+        finder.scan(this.getFirstChunkNumber());
+
         // Default values
-        parts = 0;
+        parts = finder.getChunks().length;
         fileLength = 0;
 
-        // Calculate the number of chunks and the length :
-        for (File chunk : files) {
-            if (chunk.getName().contains(name + ".kk")) {
-                // Increase the number of chunks
-                parts++;
+        // Calculate the length
+        for (File chunk : finder.getChunks()) {
+            fileLength += chunk.length();
+        }
+    }
 
-                // Update the size
-                fileLength += chunk.length();
-            }
+    @Override
+    protected File[] findChunks() throws MissingChunkException {
+        if (finder.getMissing() != -1) {
+            // A chunk is missing before the last one
+            throw new MissingChunkException();
         }
+
+        return finder.getChunks();
+    }
+
+    @Override
+    protected boolean countsChunks() {
+        return true;
+    }
+
+    @Override
+    protected File[] getHeaderFiles() {
+        return finder.getChunks();
+    }
+
+    @Override
+    protected void copyHeaders(DefaultMergeEngine probe) {
+        super.copyHeaders(probe);
+        finder = ((KFK) probe).finder;
     }
 
     @Override
@@ -73,54 +102,13 @@ public final class KFK extends DefaultMergeEngine
     }
 
     @Override
-    public void merge() throws IOException, EngineException {
-        String part = file.getAbsolutePath().substring(0, file.getAbsolutePath().length() - 4);
-        GRandomAccessFile out = null;
-        File chunk = null;
-        boolean run = true;
-
-        try {
-            // Open the final file
-            out = new GRandomAccessFile(filename, "rw");
-
-            for (int i = 0; i < parts; i++) {
-                // Next chunk
-                chunk = new File(this.getNextChunk(part, i));
-                if (!chunk.exists()) {
-                    // Check if the chunk really exists
-                    throw new MissingChunkException();
-                }
-
-                // Open the chunk to read it
-                GRandomAccessFile access = new GRandomAccessFile(chunk, "r");
-
-                // Notify the view from a new part read
-                this.fireEnginePartRead(chunk.getName());
-
-                // Merge the file
-                run = this.mergeChunk(out, access, 0, access.length());
-
-                // Reading stopped
-                if (!run) {
-                    return;
-                }
-
-                // Add the part the full read parts
-                chunks.add(chunk.getAbsolutePath());
-
-                // Close the part
-                access.close();
-            }
-
-            // Notify the end
-            this.fireEngineEnded();
-        } finally {
-            try {
-                // Close the final file
-                out.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+    protected String getChunkPrefix() {
+        return file.getAbsolutePath().substring(0, file.getAbsolutePath().length() - 4);
+    }
+
+    @Override
+    protected int getFirstChunkNumber() {
+        // The KFK parts are numbered from 0
+        return 0;
     }
 }
@@ -20,17 +20,15 @@
  */
 package org.gnome.split.core.merger;
 
-import static org.gnome.split.GnomeSplit.config;
-
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
-import org.gnome.split.core.exception.EngineException;
-import org.gnome.split.core.exception.MD5Exception;
-import org.gnome.split.core.exception.MissingChunkException;
+import org.gnome.split.config.Configuration;
+import org.gnome.split.core.EngineListener;
+import org.gnome.split.core.io.BufferPool;
 import org.gnome.split.core.io.GRandomAccessFile;
-import org.gnome.split.core.utils.ByteUtils;
-import org.gnome.split.core.utils.MD5Hasher;
 
 /**
  * Algorithm to merge files with the Xtremsplit algorithm.
@@ -43,56 +41,70 @@ public final class Xtremsplit extends DefaultMergeEngine
 
     private boolean extractable;
 
-    public Xtremsplit(File file, String filename) {
-        super(file, filename);
+    public Xtremsplit(Configuration config, EngineListener engine, File file, String filename) {
+        super(config, engine, file, filename);
     }
 
     /**
      * Used to find all the MD5 sums of the files
      */
-    private void loadMD5sums(String lastFilename) throws IOException {
-        // Find the last file to read
-        File lastFile = new File(lastFilename);
+    private void loadMD5sums(File lastFile) throws IOException {
+        // Open the last file to read
         GRandomAccessFile access = new GRandomAccessFile(lastFile, "r");
 
-        // Find the position of the MD5 sums
-        long position = access.length() - (parts * 32);
-        access.seek(position);
+        // Read all the MD5 sums at once
+        int length = parts * 32;
+        ByteBuffer sums = BufferPool.getHeapPool().acquire(Math.max(config.BUFFER_SIZE, length));
+        byte[] read = sums.array();
 
-        byte[] read = new byte[32];
-        for (int i = 0; i < parts; i++) {
-            // Read a MD5 sum
-            access.read(read);
+        try {
+            // Find the position of the MD5 sums
+            long position = access.length() - length;
+            access.seek(position);
+            access.readFully(read, 0, length);
+
+            for (int i = 0; i < parts; i++) {
+                // Convert a MD5 sum to a String
+                md5sums[i] = new String(read, i * 32, 32);
+            }
+        } finally {
+            // Give the buffer back
+            BufferPool.getHeapPool().release(sums);
 
-            // Convert it to a String
-            md5sums[i] = new String(read);
+            // Close the file access
+            access.close();
         }
-
-        // Close the file access
-        access.close();
     }
 
     @Override
     protected void loadHeaders() throws IOException {
         GRandomAccessFile access = null;
+        ByteBuffer header = null;
         try {
             // Open the first part to merge
             access = new GRandomAccessFile(file, "r");
 
             if (file.getName().endsWith(".001.exe")) {
-                // Skip useless header and .exe header
-                access.skipBytes(305704);
+                // Skip .exe header
+                access.seek(305664);
                 extractable = true;
             } else {
-                // Skip useless header
-                access.skipBytes(40);
                 extractable = false;
             }
 
+            // Read the whole header at once
+            header = BufferPool.getHeapPool().acquire(Math.max(config.BUFFER_SIZE, 104));
+            access.readFully(header.array(), 0, 104);
+            header.limit(104);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+
+            // Skip useless header
+            header.position(40);
+
             // Read filename
-            byte[] bytes = new byte[access.read()];
-            access.read(bytes);
-            access.skipBytes(50 - bytes.length);
+            byte[] bytes = new byte[Math.min(header.get() & 0xFF, 50)];
+            header.get(bytes);
+            header.position(91);
 
             // Update the filename only if it is not specified by the user
             if (filename == null) {
@@ -100,20 +112,19 @@ public final class Xtremsplit extends DefaultMergeEngine
             }
 
             // Read if MD5 is used
-            md5 = access.readBoolean();
+            md5 = (header.get() != 0);
 
             // Read file number
-            bytes = new byte[4];
-            access.read(bytes);
-            parts = (int) ByteUtils.littleEndianToInt(bytes);
+            parts = header.getInt();
 
             // Read file length
-            bytes = new byte[8];
-            access.read(bytes);
-            fileLength = ByteUtils.littleEndianToLong(bytes);
+            fileLength = header.getLong();
         } catch (IOException e) {
             throw e;
         } finally {
+            // Give the buffer back
+            BufferPool.getHeapPool().release(header);
+
             try {
                 access.close();
             } catch (IOException e) {
@@ -122,6 +133,12 @@ public final class Xtremsplit extends DefaultMergeEngine
         }
     }
 
+    @Override
+    protected void copyHeaders(DefaultMergeEngine probe) {
+        super.copyHeaders(probe);
+        extractable = ((Xtremsplit) probe).extractable;
+    }
+
     @Override
     protected String getNextChunk(String part, int number) {
         // Get the current extension
@@ -139,126 +156,52 @@ public final class Xtremsplit extends DefaultMergeEngine
     }
 
     @Override
-    public void merge() throws IOException, EngineException {
-        String part = file.getAbsolutePath().substring(0, file.getAbsolutePath().length() - 7);
-        GRandomAccessFile out = null;
-        File chunk = null;
-        boolean run = true;
-        boolean success = true;
+    protected long getDataStart(int index) {
+        if (index != 1) {
+            return 0;
+        }
 
-        try {
-            // Open the final file
-            out = new GRandomAccessFile(filename, "rw");
+        // Skip header (and the .exe header) if it is the first part
+        return extractable ? (305664 + 104) : 104;
+    }
 
-            // Load all the MD5 sums
-            md5sums = new String[parts];
-            this.loadMD5sums(this.getNextChunk(part, parts));
+    @Override
+    protected long getDataEnd(int index, long length) {
+        if (extractable && (index == 1)) {
+            // Skip the last 24 bytes (due to .exe format)
+            length -= 24;
+        }
 
-            // Use for MD5 calculation
-            MD5Hasher md5hasher = null;
+        if (md5 && (index == parts)) {
+            // Skip the MD5 sums if it is the last part
+            length -= (parts * 32);
+        }
 
-            // Use it only if we should calculate the MD5
-            if (md5) {
-                md5hasher = new MD5Hasher();
-            }
+        return length;
+    }
 
-            for (int i = 1; i <= parts; i++) {
-                // Next chunk
-                chunk = new File(this.getNextChunk(part, i));
-                if (!chunk.exists()) {
-                    // Check if the chunk really exists
-                    throw new MissingChunkException();
-                }
-
-                // Open the chunk to read it
-                GRandomAccessFile access = new GRandomAccessFile(chunk, "r");
-
-                // Notify the view from a new part read
-                this.fireEnginePartRead(chunk.getName());
-
-                long read = 0;
-                long length = access.length();
-                if (i == 1) {
-                    // Size of the header
-                    if (extractable) {
-                        read += 305664;
-
-                        // Skip the last 25 bytes (due to .exe format)
-                        length -= 24;
-                    }
-
-                    // Skip header if it is the first part
-                    read += 104;
-                    access.skipBytes((int) read);
-                } else if (md5 && (i == parts)) {
-                    // Skip the MD5 sum if it is the last part
-                    length -= (parts * 32);
-                }
-
-                // Merge the file
-                run = this.mergeChunk(out, access, read, length);
-
-                // Reading stopped
-                if (!run) {
-                    return;
-                }
-
-                if (config.CHECK_FILE_HASH && md5) {
-                    // Notify the view
-                    this.fireMD5SumStarted();
-
-                    if (i == parts) {
-                        // Calculate the MD5 sum without including the MD5
-                        // sums at the end of the last file
-                        md5sum = md5hasher.hashToString(chunk, length);
-                    } else {
-                        if (extractable && (i == 1)) {
-                            // Calculate the MD5 sum skipping .exe header
-                            md5sum = md5hasher.hashToString(chunk, 305664, length);
-                        } else {
-                            // Calculate the MD5 sum normally
-                            md5sum = md5hasher.hashToString(chunk);
-                        }
-                    }
-
-                    // Notify the view
-                    this.fireMD5SumEnded();
-
-                    // MD5 sums are different
-                    if (!md5sum.equals(md5sums[i - 1])) {
-                        success = false;
-                    }
-                }
-
-                // Add the part the full read parts
-                chunks.add(chunk.getAbsolutePath());
-
-                // Close the part
-                access.close();
-            }
+    @Override
+    protected boolean useChunkSums() {
+        return config.CHECK_FILE_HASH && md5;
+    }
 
-            if (!success && md5) {
-                // Notify the error. It's just a warning so we don't throw it.
-                this.fireEngineError(new MD5Exception());
-            } else if (success) {
-                if (config.DELETE_PARTS && md5) {
-                    // Delete all parts if and *only if* the MD5 sums are
-                    // equals
-                    for (String path : chunks) {
-                        new File(path).delete();
-                    }
-                }
-
-                // Notify the end
-                this.fireEngineEnded();
-            }
-        } finally {
-            try {
-                // Close the final file
-                out.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+    @Override
+    protected long getChunkSumStart(int index) {
+        // The .exe header is not included in the MD5 sum
+        return (extractable && (index == 1)) ? 305664 : 0;
+    }
+
+    @Override
+    protected String getChunkSum(int index) {
+        return md5sums[index - 1];
+    }
+
+    @Override
+    protected void prepareMerge(File[] files) throws IOException {
+        if (this.useChunkSums()) {
+            // Load all the MD5 sums
+            md5sums = new String[parts];
+            this.loadMD5sums(files[parts - 1]);
         }
     }
 }
@@ -20,17 +20,15 @@
  */
 package org.gnome.split.core.merger;
 
-import static org.gnome.split.GnomeSplit.config;
-
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
 
-import org.gnome.split.core.exception.EngineException;
-import org.gnome.split.core.exception.MD5Exception;
-import org.gnome.split.core.exception.MissingChunkException;
+import org.gnome.split.config.Configuration;
+import org.gnome.split.core.EngineListener;
+import org.gnome.split.core.io.BufferPool;
 import org.gnome.split.core.io.GRandomAccessFile;
-import org.gnome.split.core.utils.MD5Hasher;
 
 /**
  * Algorithm to merge files with the YoyoCut algorithm.
@@ -44,13 +42,14 @@ public final class YoyoCut extends DefaultMergeEngine
      */
     private int header;
 
-    public YoyoCut(File file, String filename) {
-        super(file, filename);
+    public YoyoCut(Configuration config, EngineListener engine, File file, String filename) {
+        super(config, engine, file, filename);
     }
 
     @Override
     protected void loadHeaders() throws IOException {
         GRandomAccessFile access = null;
+        ByteBuffer buffer = null;
         try {
             // Open the first part to merge
             access = new GRandomAccessFile(file, "r");
@@ -58,45 +57,39 @@ public final class YoyoCut extends DefaultMergeEngine
             // Set the length of the header to 0
             header = 0;
 
-            // An array of bytes which will be useful
-            byte[] bytes;
-
-            // Read the file extension
-            ArrayList<Byte> buffer = new ArrayList<Byte>();
-            bytes = new byte[1];
+            // Read the beginning of the part, the header is inside it
+            buffer = BufferPool.getHeapPool().acquire(config.BUFFER_SIZE);
+            byte[] bytes = buffer.array();
+            int length = (int) Math.min(access.length(), config.BUFFER_SIZE);
+            access.readFully(bytes, 0, length);
 
-            // The separator is an space character
-            while (bytes[0] != 32) {
-                access.read(bytes);
-                buffer.add(bytes[0]);
+            // Read the file extension, the separator is an space character
+            while ((header < length) && (bytes[header] != 32)) {
+                header++;
             }
 
-            // Update the header length
-            header += buffer.size();
+            if ((header + 4) > length) {
+                // Can't find the end of the extension or the number of chunks
+                throw new EOFException();
+            }
 
-            // Read the number of chunks
-            bytes = new byte[3];
-            access.read(bytes);
+            // Update the header length (including the space character)
+            String extension = new String(bytes, 0, header);
+            header++;
 
-            // Parse and update the length of the header
-            parts = Integer.parseInt(new String(bytes));
+            // Parse the number of chunks and update the length of the header
+            parts = Integer.parseInt(new String(bytes, header, 3));
             header += 3;
 
             // Check if there is a MD5 sum
-            bytes = new byte[4];
-            access.read(bytes);
-
-            // Update the length of the header
-            if (new String(bytes).equals("MD5:")) {
+            if (((header + 36) <= length) && new String(bytes, header, 4).equals("MD5:")) {
                 md5 = true;
-                header += 36;
 
-                // Read the MD5 sum
-                bytes = new byte[32];
-                access.read(bytes);
+                // Read the MD5 sum and convert from bytes to string
+                md5sum = new String(bytes, header + 4, 32).toUpperCase();
 
-                // Convert from bytes to string
-                md5sum = new String(bytes).toUpperCase();
+                // Update the length of the header
+                header += 36;
             }
 
             // Get the common part of the name of each chunk
@@ -104,14 +97,8 @@ public final class YoyoCut extends DefaultMergeEngine
 
             // Update the filename only if it is not specified by the user
             if (filename == null) {
-                // Parse the extension (don't get the space character)
-                byte[] extension = new byte[buffer.size() - 1];
-                for (byte b = 0; b < extension.length; b++) {
-                    extension[b] = buffer.get(b);
-                }
-
                 // Update the name
-                filename = part + new String(extension);
+                filename = part + extension;
             }
 
             // Calculate the length of the final file
@@ -121,6 +108,9 @@ public final class YoyoCut extends DefaultMergeEngine
         } catch (IOException e) {
             throw e;
         } finally {
+            // Give the buffer back
+            BufferPool.getHeapPool().release(buffer);
+
             try {
                 access.close();
             } catch (IOException e) {
@@ -129,6 +119,27 @@ public final class YoyoCut extends DefaultMergeEngine
         }
     }
 
+    /**
+     * The length of the file is the sum of the lengths of all the chunks.
+     */
+    @Override
+    protected File[] getHeaderFiles() {
+        String part = this.getChunkPrefix();
+        File[] files = new File[parts];
+
+        for (int i = 1; i <= parts; i++) {
+            files[i - 1] = new File(this.getNextChunk(part, i));
+        }
+
+        return files;
+    }
+
+    @Override
+    protected void copyHeaders(DefaultMergeEngine probe) {
+        super.copyHeaders(probe);
+        header = ((YoyoCut) probe).header;
+    }
+
     @Override
     protected String getNextChunk(String part, int number) {
         // Get the current extension
@@ -146,91 +157,13 @@ public final class YoyoCut extends DefaultMergeEngine
     }
 
     @Override
-    public void merge() throws IOException, EngineException {
-        String part = file.getAbsolutePath().substring(0, file.getAbsolutePath().length() - 7);
-        GRandomAccessFile out = null;
-        File chunk = null;
-        boolean run = true;
-        boolean success = true;
-
-        try {
-            // Open the final file
-            out = new GRandomAccessFile(filename, "rw");
-
-            for (int i = 1; i <= parts; i++) {
-                // Next chunk
-                chunk = new File(this.getNextChunk(part, i));
-                if (!chunk.exists()) {
-                    // Check if the chunk really exists
-                    throw new MissingChunkException();
-                }
-
-                // Open the chunk to read it
-                GRandomAccessFile access = new GRandomAccessFile(chunk, "r");
-
-                // Notify the view from a new part read
-                this.fireEnginePartRead(chunk.getName());
-
-                long read = 0;
-                long length = access.length();
-                if (i == 1) {
-                    // Update the read bytes count
-                    access.skipBytes(header);
-                    read += header;
-                }
-
-                // Merge the file
-                run = this.mergeChunk(out, access, read, length);
-
-                // Reading stopped
-                if (!run) {
-                    return;
-                }
-
-                if (config.CHECK_FILE_HASH && md5 && (i == parts)) {
-                    // Notify the view
-                    this.fireMD5SumStarted();
-
-                    // Calculate the MD5 of the new file
-                    MD5Hasher hasher = new MD5Hasher();
-                    String found = hasher.hashToString(new File(filename));
-
-                    // MD5 are different
-                    success = md5sum.equals(found);
-
-                    // Notify the view again
-                    this.fireMD5SumEnded();
-                }
-
-                // Add the part the full read parts
-                chunks.add(chunk.getAbsolutePath());
-
-                // Close the part
-                access.close();
-            }
+    protected long getDataStart(int index) {
+        // Skip headers if it is the first part
+        return (index == 1) ? header : 0;
+    }
 
-            if (!success && md5) {
-                // Notify the error. It's just a warning so we don't throw it.
-                this.fireEngineError(new MD5Exception());
-            } else if (success) {
-                if (config.DELETE_PARTS && md5) {
-                    // Delete all parts if and *only if* the MD5 sums are
-                    // equals
-                    for (String path : chunks) {
-                        new File(path).delete();
-                    }
-                }
-
-                // Notify the end
-                this.fireEngineEnded();
-            }
-        } finally {
-            try {
-                // Close the final file
-                out.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+    @Override
+    protected boolean useFileSum() {
+        return config.CHECK_FILE_HASH && md5;
     }
 }
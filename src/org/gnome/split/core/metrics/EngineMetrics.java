@@ -0,0 +1,296 @@
+/*
+ * EngineMetrics.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core.metrics;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures of the work done by an engine: its smoothed throughput, the time
+ * spent in each phase of the action, the time needed to handle each part
+ * and the latency of the read and write calls. It tells if an action is
+ * limited by the disks or by the MD5 sums. It can be updated by several
+ * threads at the same time.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class EngineMetrics
+{
+    /**
+     * Opening the files.
+     */
+    public static final int OPEN = 0;
+
+    /**
+     * Reading or writing the headers and the MD5 sums stored in the files.
+     */
+    public static final int HEADERS = 1;
+
+    /**
+     * Copying the data.
+     */
+    public static final int COPY = 2;
+
+    /**
+     * Calculating or verifying MD5 sums.
+     */
+    public static final int HASH = 3;
+
+    /**
+     * Closing the files.
+     */
+    public static final int CLOSE = 4;
+
+    /**
+     * Names of the phases, used when they are written in a report.
+     */
+    private static final String[] PHASES = new String[] {
+            "open", "headers", "copy", "hash", "close"
+    };
+
+    /**
+     * Time constant of the smoothed throughput, in nanoseconds. A sample
+     * weights half as much after about 3.5 seconds.
+     */
+    private static final double RATE_TIME_CONSTANT = 5e9;
+
+    /**
+     * Cumulative time spent in each phase by all the threads, in
+     * nanoseconds.
+     */
+    private final LongAdder[] phases;
+
+    /**
+     * Time needed to handle each part, in nanoseconds.
+     */
+    private final ConcurrentMap<Integer, Long> parts;
+
+    /**
+     * Latency of the read calls.
+     */
+    private final LatencyHistogram reads;
+
+    /**
+     * Latency of the write calls (transfers included).
+     */
+    private final LatencyHistogram writes;
+
+    /**
+     * Number of the last part which has been started.
+     */
+    private volatile int part;
+
+    /**
+     * Smoothed throughput, in bytes per second, <code>-1</code> until the
+     * first sample.
+     */
+    private volatile double rate;
+
+    /**
+     * Bytes done when the last sample was taken.
+     */
+    private volatile long done;
+
+    /**
+     * Bytes to handle when the last sample was taken.
+     */
+    private volatile long total;
+
+    /**
+     * Time of the last sample, in nanoseconds.
+     */
+    private long sampled;
+
+    public EngineMetrics() {
+        this.phases = new LongAdder[PHASES.length];
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new LongAdder();
+        }
+
+        this.parts = new ConcurrentHashMap<Integer, Long>();
+        this.reads = new LatencyHistogram();
+        this.writes = new LatencyHistogram();
+        this.part = 0;
+        this.rate = -1;
+        this.done = 0;
+        this.total = 0;
+        this.sampled = 0;
+    }
+
+    /**
+     * Get the name of a <code>phase</code>.
+     */
+    public static String getPhaseName(int phase) {
+        return PHASES[phase];
+    }
+
+    /**
+     * Get the number of phases.
+     */
+    public static int getPhaseCount() {
+        return PHASES.length;
+    }
+
+    /**
+     * Get the current time to start measuring something.
+     */
+    public long begin() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Add the time elapsed since <code>start</code> to a <code>phase</code>.
+     * It returns the current time so the next phase can start from it.
+     */
+    public long end(int phase, long start) {
+        long now = System.nanoTime();
+        phases[phase].add(now - start);
+        return now;
+    }
+
+    /**
+     * Record a read call which started at <code>start</code>. The time is
+     * part of the copy phase. It returns the current time.
+     */
+    public long endRead(long start) {
+        long now = this.end(COPY, start);
+        reads.record(now - start);
+        return now;
+    }
+
+    /**
+     * Record a write call which started at <code>start</code>. The time is
+     * part of the copy phase. It returns the current time.
+     */
+    public long endWrite(long start) {
+        long now = this.end(COPY, start);
+        writes.record(now - start);
+        return now;
+    }
+
+    /**
+     * Tell that the part <code>number</code> is being handled. It returns
+     * the current time, to be given to {@link #endPart(int, long)}.
+     */
+    public long startPart(int number) {
+        part = number;
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the time needed to handle the part <code>number</code>, which
+     * started at <code>start</code>.
+     */
+    public void endPart(int number, long start) {
+        parts.put(number, System.nanoTime() - start);
+    }
+
+    /**
+     * Take a sample of the progress of the action: <code>done</code> bytes
+     * out of <code>total</code> at the <code>now</code> time (in
+     * nanoseconds). It must always be called by the same thread.
+     */
+    public void sample(long done, long total, long now) {
+        if (sampled != 0) {
+            long elapsed = now - sampled;
+            if (elapsed <= 0) {
+                return;
+            }
+
+            double current = (done - this.done) * 1e9 / elapsed;
+            if (rate < 0) {
+                rate = current;
+            } else {
+                // Exponentially weighted moving average, the weight depends
+                // on the time between the samples
+                double alpha = 1 - Math.exp(-elapsed / RATE_TIME_CONSTANT);
+                rate += alpha * (current - rate);
+            }
+        }
+
+        this.sampled = now;
+        this.done = done;
+        this.total = total;
+    }
+
+    /**
+     * Get the number of the last part which has been started (starting at
+     * 1), or 0 if none has been started yet.
+     */
+    public int getCurrentPart() {
+        return part;
+    }
+
+    /**
+     * Get the smoothed throughput in bytes per second, or <code>-1</code> if
+     * it is not known yet.
+     */
+    public long getRate() {
+        return (rate < 0) ? -1 : Math.round(rate);
+    }
+
+    /**
+     * Get the estimated time needed to finish the action, in seconds, or
+     * <code>-1</code> if it can't be estimated.
+     */
+    public long getRemainingTime() {
+        double current = rate;
+        if (current < 1) {
+            return -1;
+        }
+
+        return (long) Math.ceil(Math.max(0, total - done) / current);
+    }
+
+    /**
+     * Get the cumulative time spent by all the threads in a
+     * <code>phase</code>, in nanoseconds.
+     */
+    public long getPhaseTime(int phase) {
+        return phases[phase].sum();
+    }
+
+    /**
+     * Get the time needed to handle each part (by part number), in
+     * nanoseconds. Parts which have not been fully handled are not included.
+     */
+    public SortedMap<Integer, Long> getPartTimes() {
+        return new TreeMap<Integer, Long>(parts);
+    }
+
+    /**
+     * Get the latency of the read calls.
+     */
+    public LatencyHistogram getReadLatency() {
+        return reads;
+    }
+
+    /**
+     * Get the latency of the write calls. Transfers from a file to another
+     * one are counted as writes.
+     */
+    public LatencyHistogram getWriteLatency() {
+        return writes;
+    }
+}
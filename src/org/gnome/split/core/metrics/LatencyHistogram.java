@@ -0,0 +1,121 @@
+/*
+ * LatencyHistogram.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations using buckets whose size doubles each time, so
+ * it can hold anything from a nanosecond to several minutes in a few
+ * buckets. The bucket <code>i</code> counts the durations which are lower
+ * than 2<sup>i</sup> nanoseconds and not in a previous bucket. It can be
+ * updated by several threads at the same time.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class LatencyHistogram
+{
+    /**
+     * Number of buckets, the last one holds everything above 2^39 ns (about
+     * 9 minutes).
+     */
+    public static final int BUCKETS = 40;
+
+    /**
+     * Number of durations in each bucket.
+     */
+    private final AtomicLongArray counts;
+
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+    }
+
+    /**
+     * Add a <code>duration</code>, in nanoseconds, to the histogram.
+     */
+    public void record(long duration) {
+        int bucket = 64 - Long.numberOfLeadingZeros(Math.max(0, duration));
+        counts.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+    }
+
+    /**
+     * Get the number of durations in each bucket.
+     */
+    public long[] getCounts() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+
+        return copy;
+    }
+
+    /**
+     * Get the number of durations in the histogram.
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+
+        return count;
+    }
+
+    /**
+     * Get the upper bound (excluded) of a <code>bucket</code>, in
+     * nanoseconds.
+     */
+    public static long getUpperBound(int bucket) {
+        return (bucket >= (BUCKETS - 1)) ? Long.MAX_VALUE : (1L << bucket);
+    }
+
+    /**
+     * Get the upper bound of the bucket holding the given
+     * <code>percentile</code> (between 0 and 100) of the durations, in
+     * nanoseconds. It returns <code>-1</code> if the histogram is empty.
+     */
+    public long getPercentile(double percentile) {
+        long[] copy = this.getCounts();
+
+        long count = 0;
+        for (long value : copy) {
+            count += value;
+        }
+
+        if (count == 0) {
+            return -1;
+        }
+
+        // Number of durations which must be included
+        long rank = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += copy[i];
+            if ((seen >= rank) && (seen > 0)) {
+                return getUpperBound(i);
+            }
+        }
+
+        return getUpperBound(BUCKETS - 1);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Devices.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core.scheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * A class to find the disk which holds a file, so the jobs using the same
+ * disk do not run at the same time.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class Devices
+{
+    /**
+     * Directory where Linux describes the block devices.
+     */
+    private static final Path BLOCK_DEVICES = Paths.get("/sys/class/block");
+
+    private Devices() {
+        // No instantiation from outside
+    }
+
+    /**
+     * Get a name identifying the disk which holds (or will hold) the
+     * <code>file</code>. Partitions of the same disk, and volumes built on
+     * top of it, give the same name. When the disk can't be found, the name
+     * of the file system is used instead.
+     */
+    public static String getDevice(File file) {
+        // The file may not be created yet, use its closest parent
+        File existing = file.getAbsoluteFile();
+        while ((existing != null) && !existing.exists()) {
+            existing = existing.getParentFile();
+        }
+
+        if (existing == null) {
+            return file.getAbsolutePath();
+        }
+
+        try {
+            FileStore store = Files.getFileStore(existing.toPath());
+            String name = store.name();
+
+            if (name.startsWith("/dev/")) {
+                String disk = getDisk(Paths.get(name).toRealPath().getFileName().toString(), 0);
+                if (disk != null) {
+                    return disk;
+                }
+            }
+
+            // The mount point is part of the name, so each file system is
+            // unique (several tmpfs do not share the same name)
+            return store.toString();
+        } catch (IOException e) {
+            return existing.getAbsolutePath();
+        }
+    }
+
+    /**
+     * Get the disk which contains a block <code>device</code>, or
+     * <code>null</code> if it is unknown.
+     */
+    private static String getDisk(String device, int depth) throws IOException {
+        Path block = BLOCK_DEVICES.resolve(device);
+        if ((depth > 8) || !Files.exists(block)) {
+            return null;
+        }
+
+        // A volume (LVM, encryption...) lives on the disk of its first slave
+        Path slaves = block.resolve("slaves");
+        if (Files.isDirectory(slaves)) {
+            DirectoryStream<Path> stream = Files.newDirectoryStream(slaves);
+            try {
+                for (Path slave : stream) {
+                    return getDisk(slave.getFileName().toString(), depth + 1);
+                }
+            } finally {
+                stream.close();
+            }
+        }
+
+        // A partition is described inside the directory of its disk
+        Path real = block.toRealPath();
+        if (Files.exists(block.resolve("partition"))) {
+            return real.getParent().getFileName().toString();
+        }
+
+        return real.getFileName().toString();
+    }
+}
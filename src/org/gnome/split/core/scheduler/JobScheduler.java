@@ -0,0 +1,200 @@
+/*
+ * JobScheduler.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core.scheduler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.gnome.split.config.Configuration;
+
+/**
+ * Run several {@link ScheduledJob jobs} at the same time. A job starts as
+ * soon as none of its disks is used by too many jobs, so jobs on different
+ * disks run together while jobs on the same disk wait for each other (they
+ * would only slow each other down).
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class JobScheduler
+{
+    /**
+     * Configuration giving the number of jobs per disk.
+     */
+    private final Configuration config;
+
+    /**
+     * All the jobs, in the order they were given.
+     */
+    private final List<ScheduledJob> jobs;
+
+    /**
+     * Number of running jobs using each disk.
+     */
+    private final Map<String, Integer> running;
+
+    public JobScheduler(Configuration config) {
+        this.config = config;
+        this.jobs = new ArrayList<ScheduledJob>();
+        this.running = new HashMap<String, Integer>();
+    }
+
+    /**
+     * Add a job to run. Its engine must be set before. The disks of the job
+     * are found in another thread, so the caller is not kept waiting.
+     */
+    public synchronized void submit(final ScheduledJob job) {
+        jobs.add(job);
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                job.findDevices();
+                found();
+            }
+        }, "Job devices - " + job.getName()).start();
+    }
+
+    /**
+     * Stop a job. A waiting job will never be started, a running one is
+     * stopped by its engine.
+     */
+    public synchronized void cancel(ScheduledJob job) {
+        if (job.getState() == ScheduledJob.QUEUED) {
+            job.setState(ScheduledJob.STOPPED);
+        } else if (job.getState() == ScheduledJob.RUNNING) {
+            job.getEngine().stop(false);
+        }
+    }
+
+    /**
+     * Get all the jobs which have been given to the scheduler and have not
+     * been removed.
+     */
+    public synchronized List<ScheduledJob> getJobs() {
+        return new ArrayList<ScheduledJob>(jobs);
+    }
+
+    /**
+     * Tell if a job is waiting or running.
+     */
+    public synchronized boolean isBusy() {
+        for (ScheduledJob job : jobs) {
+            if (job.isActive()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Forget the jobs which are not waiting or running anymore.
+     */
+    public synchronized void removeFinished() {
+        Iterator<ScheduledJob> iterator = jobs.iterator();
+        while (iterator.hasNext()) {
+            if (!iterator.next().isActive()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Start the jobs waiting for the disks which have just been found.
+     */
+    private synchronized void found() {
+        this.schedule();
+    }
+
+    /**
+     * Start the waiting jobs whose disks are known and available, in the
+     * order they were given.
+     */
+    private void schedule() {
+        for (ScheduledJob job : jobs) {
+            if ((job.getState() == ScheduledJob.QUEUED) && job.hasDevices() && this.isAvailable(job)) {
+                this.start(job);
+            }
+        }
+    }
+
+    /**
+     * Check if the disks of a job can be used by one more job.
+     */
+    private boolean isAvailable(ScheduledJob job) {
+        for (String device : job.getDevices()) {
+            Integer count = running.get(device);
+            if ((count != null) && (count >= config.JOBS_PER_DEVICE)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Run the engine of a job in its own thread.
+     */
+    private void start(final ScheduledJob job) {
+        for (String device : job.getDevices()) {
+            Integer count = running.get(device);
+            running.put(device, (count == null) ? 1 : (count + 1));
+        }
+
+        job.setState(ScheduledJob.RUNNING);
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    job.getEngine().run();
+                } finally {
+                    finish(job);
+                }
+            }
+        }, "Job - " + job.getName()).start();
+    }
+
+    /**
+     * Release the disks of a job which is done and start the jobs which were
+     * waiting for them.
+     */
+    private synchronized void finish(ScheduledJob job) {
+        for (String device : job.getDevices()) {
+            Integer count = running.get(device);
+            if ((count == null) || (count <= 1)) {
+                running.remove(device);
+            } else {
+                running.put(device, count - 1);
+            }
+        }
+
+        if (job.getState() == ScheduledJob.RUNNING) {
+            // The engine did not tell how it ended
+            job.setState(ScheduledJob.ENDED);
+        }
+
+        this.schedule();
+    }
+}
@@ -0,0 +1,397 @@
+/*
+ * ScheduledJob.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core.scheduler;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.gnome.split.core.Engine;
+import org.gnome.split.core.EngineListener;
+
+/**
+ * A job given to the {@link JobScheduler scheduler}. The job is the
+ * listener of its {@link Engine engine}: it keeps the progress, the speed
+ * and the state of the engine so they can be displayed at any time.
+ * <p>
+ * Several jobs can run at the same time, but the view only follows one of
+ * them. The events of a job are given to the view once the job has claimed
+ * it, which a running job does when the view does not follow any other
+ * job.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class ScheduledJob implements EngineListener
+{
+    /**
+     * The job is waiting for its disks.
+     */
+    public static final int QUEUED = 0;
+
+    /**
+     * The engine of the job is running (or is paused).
+     */
+    public static final int RUNNING = 1;
+
+    /**
+     * The engine has finished its work.
+     */
+    public static final int ENDED = 2;
+
+    /**
+     * The engine has been stopped.
+     */
+    public static final int STOPPED = 3;
+
+    /**
+     * The engine has failed.
+     */
+    public static final int FAILED = 4;
+
+    /**
+     * Name of the job.
+     */
+    private final String name;
+
+    /**
+     * Files (or directories) read and written by the job.
+     */
+    private final File[] paths;
+
+    /**
+     * Disks used by the job, <code>null</code> until they are found.
+     */
+    private volatile Set<String> devices;
+
+    /**
+     * Listener of the view, may be <code>null</code>.
+     */
+    private final EngineListener view;
+
+    /**
+     * Engine performing the job.
+     */
+    private volatile Engine engine;
+
+    /**
+     * State of the job.
+     */
+    private volatile int state;
+
+    /**
+     * Bytes already handled.
+     */
+    private volatile long done;
+
+    /**
+     * Bytes to handle.
+     */
+    private volatile long total;
+
+    /**
+     * Last speed of the engine (-1 if unknown).
+     */
+    private volatile long speed;
+
+    /**
+     * Error which made the job fail.
+     */
+    private volatile Exception error;
+
+    /**
+     * Files created by the job.
+     */
+    private volatile List<String> files;
+
+    /**
+     * Create a job which reads and writes the <code>files</code> (or
+     * directories) and notifies the <code>view</code>. The disks of the
+     * files are found by the scheduler.
+     */
+    public ScheduledJob(String name, EngineListener view, File... files) {
+        this.name = name;
+        this.view = view;
+        this.paths = files;
+        this.devices = null;
+        this.engine = null;
+        this.state = QUEUED;
+        this.done = 0;
+        this.total = 0;
+        this.speed = -1;
+        this.error = null;
+        this.files = new ArrayList<String>();
+    }
+
+    /**
+     * Get the name of the job.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the disks used by the job, none if they have not been found yet.
+     */
+    public Set<String> getDevices() {
+        Set<String> found = devices;
+        if (found == null) {
+            return Collections.emptySet();
+        }
+
+        return Collections.unmodifiableSet(found);
+    }
+
+    /**
+     * Tell if the disks used by the job have been found.
+     */
+    boolean hasDevices() {
+        return (devices != null);
+    }
+
+    /**
+     * Find the disks used by the job. This reads the file system, so it
+     * should not be done in the thread of the interface.
+     */
+    void findDevices() {
+        Set<String> found = new HashSet<String>();
+        for (File file : paths) {
+            found.add(Devices.getDevice(file));
+        }
+
+        devices = found;
+    }
+
+    /**
+     * Get the state of the job.
+     */
+    public int getState() {
+        return state;
+    }
+
+    /**
+     * Change the state of the job.
+     */
+    void setState(int state) {
+        this.state = state;
+    }
+
+    /**
+     * Tell if the job is waiting or running.
+     */
+    public boolean isActive() {
+        return (state == QUEUED) || (state == RUNNING);
+    }
+
+    /**
+     * Get the number of bytes already handled.
+     */
+    public long getDone() {
+        return done;
+    }
+
+    /**
+     * Get the number of bytes to handle.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Get the last speed of the engine, -1 if it is unknown.
+     */
+    public long getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Get the error which made the job fail, or <code>null</code>.
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * Check if the events must be given to the view. The view follows this
+     * job if it does not follow any other one. A running job claims the view
+     * while holding its lock, so two jobs can't both claim it, and the view
+     * lets it go once the job is done.
+     */
+    private boolean isShown() {
+        if ((view == null) || (engine == null)) {
+            return false;
+        }
+
+        synchronized (view) {
+            Engine shown = view.getEngine();
+            if ((shown == null) && (state == RUNNING)) {
+                // Let the view follow this job
+                view.setEngine(engine);
+                return true;
+            }
+
+            return (shown == engine);
+        }
+    }
+
+    @Override
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public Engine getEngine() {
+        return engine;
+    }
+
+    @Override
+    public void engineSpeedChanged(long speed) {
+        this.speed = speed;
+
+        if (this.isShown()) {
+            view.engineSpeedChanged(speed);
+        }
+    }
+
+    @Override
+    public void enginePartCreated(String filename) {
+        if (this.isShown()) {
+            view.enginePartCreated(filename);
+        }
+    }
+
+    @Override
+    public void enginePartWritten(String filename) {
+        if (this.isShown()) {
+            view.enginePartWritten(filename);
+        }
+    }
+
+    @Override
+    public void enginePartRead(String filename) {
+        if (this.isShown()) {
+            view.enginePartRead(filename);
+        }
+    }
+
+    @Override
+    public void engineMD5SumStarted() {
+        if (this.isShown()) {
+            view.engineMD5SumStarted();
+        }
+    }
+
+    @Override
+    public void engineMD5SumEnded() {
+        if (this.isShown()) {
+            view.engineMD5SumEnded();
+        }
+    }
+
+    @Override
+    public void engineReady() {
+        if (this.isShown()) {
+            view.engineReady();
+        }
+    }
+
+    @Override
+    public void engineRunning() {
+        if (this.isShown()) {
+            view.engineRunning();
+        }
+    }
+
+    @Override
+    public void engineSuspended() {
+        if (this.isShown()) {
+            view.engineSuspended();
+        }
+    }
+
+    @Override
+    public void engineEnded() {
+        state = ENDED;
+
+        if (this.isShown()) {
+            view.engineEnded();
+        }
+    }
+
+    @Override
+    public void engineStopped() {
+        state = STOPPED;
+
+        if (this.isShown()) {
+            view.engineStopped();
+        }
+    }
+
+    @Override
+    public void engineError(Exception exception) {
+        error = exception;
+        state = FAILED;
+
+        boolean shown;
+        if (engine == null) {
+            // The engine failed while it was created, so the job will never
+            // run, the view tells it if it does not follow another job
+            shown = (view != null) && (view.getEngine() == null);
+        } else {
+            shown = this.isShown();
+        }
+
+        if (shown) {
+            view.engineError(exception);
+        }
+    }
+
+    @Override
+    public void engineDone(long done, long total) {
+        this.done = done;
+        this.total = total;
+
+        if (this.isShown()) {
+            view.engineDone(done, total);
+        }
+    }
+
+    @Override
+    public void engineFilesList(List<String> list) {
+        files = list;
+
+        if (this.isShown()) {
+            view.engineFilesList(list);
+        }
+    }
+
+    @Override
+    public List<String> getFilesList() {
+        return files;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
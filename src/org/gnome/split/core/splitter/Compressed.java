@@ -0,0 +1,255 @@
+/*
+ * Compressed.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core.splitter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.Deflater;
+
+import org.gnome.split.config.Configuration;
+import org.gnome.split.core.EngineListener;
+import org.gnome.split.core.events.CopyEvent;
+import org.gnome.split.core.io.BufferPool;
+import org.gnome.split.core.io.GRandomAccessFile;
+import org.gnome.split.core.metrics.EngineMetrics;
+import org.gnome.split.core.utils.MD5Hasher;
+
+/**
+ * Algorithm to split a file and compress each chunk on its own (using the
+ * zlib format), so several chunks can be compressed at the same time. Each
+ * chunk starts with a header telling where its data goes in the file, its
+ * length before and after the compression and the MD5 sum of the
+ * compressed data.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class Compressed extends DefaultSplitEngine
+{
+    /**
+     * First bytes of each chunk, they change with the format of the header.
+     */
+    private static final byte[] MAGIC = new byte[] {
+            'G', 'S', 'Z', '1'
+    };
+
+    /**
+     * Used when no MD5 sum is saved.
+     */
+    private static final String NO_SUM = "00000000000000000000000000000000";
+
+    public Compressed(Configuration config, EngineListener engine, File file, long size, String destination) {
+        super(config, engine, file, size, destination);
+    }
+
+    @Override
+    protected String getChunkName(String destination, int number) {
+        // Get the current extension
+        String current;
+        if (number >= 100) {
+            current = String.valueOf(number);
+        } else if (number >= 10) {
+            current = "0" + number;
+        } else {
+            current = "00" + number;
+        }
+
+        // Finally
+        return (destination + "." + current + ".gsz");
+    }
+
+    /**
+     * Each chunk has a header with the number of chunks, so they would all
+     * have to be written again.
+     */
+    @Override
+    public boolean canStream() {
+        return false;
+    }
+
+    /**
+     * Get the header of the chunk <code>number</code>, which holds
+     * <code>length</code> bytes of the file starting at <code>position</code>
+     * compressed in <code>compressed</code> bytes.
+     */
+    private byte[] getPartHeader(int number, long position, long length, long compressed, String sum)
+            throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(buffer);
+
+        header.write(MAGIC);
+        header.writeInt(number);
+        header.writeInt(parts);
+        header.writeLong(file.length());
+        header.writeLong(position);
+        header.writeLong(length);
+        header.writeLong(compressed);
+
+        // Write if using MD5, and the sum itself
+        header.writeBoolean(sum != null);
+        header.write(((sum != null) ? sum : NO_SUM).getBytes());
+
+        // Write original filename
+        header.writeUTF(file.getName());
+
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Write the compressed <code>data</code> in the <code>target</code> at
+     * <code>position</code>. If <code>current</code> is set (incremental
+     * split), the data is first compared with what the chunk, which is
+     * <code>existing</code> bytes long, already holds there, and only written
+     * if it has changed. It returns <code>true</code> if the data has been
+     * handled, else it returns <code>false</code>.
+     */
+    private boolean put(FileChannel target, ByteBuffer data, ByteBuffer current, long position, long existing)
+            throws IOException {
+        if (current != null) {
+            // Read the same data in the chunk, if it is long enough
+            current.clear();
+            current.limit((int) Math.max(0, Math.min(data.remaining(), existing - position)));
+            if (!this.read(target, current, position)) {
+                // Stop the current thread
+                return false;
+            }
+
+            current.flip();
+            if (data.equals(current)) {
+                // Nothing has changed
+                return true;
+            }
+        }
+
+        return this.write(target, data, position);
+    }
+
+    /**
+     * Write the header of the chunk, then its compressed data. The MD5 sum
+     * of the compressed data is stored in the header, so the chunks can be
+     * checked without being uncompressed. The compression gives the same
+     * data for the same file, so an incremental split only writes the
+     * compressed data which has changed.
+     */
+    @Override
+    protected boolean writeData(FileChannel source, int number, GRandomAccessFile access, MD5Hasher chunkHasher)
+            throws IOException {
+        String chunk = this.getChunkName(destination, number);
+        long position = this.getPartStart(number);
+        long length = this.getPartLength(number);
+
+        // The header is written again once the compressed length is known,
+        // it keeps the same length
+        long header = access.getFilePointer();
+        byte[] empty = this.getPartHeader(number, position, length, 0, null);
+        long offset = header + empty.length;
+        if (!config.INCREMENTAL_SPLIT) {
+            access.write(empty);
+        }
+
+        MD5Hasher sum = config.SAVE_FILE_HASH ? new MD5Hasher(config.BUFFER_SIZE) : null;
+        FileChannel target = access.getChannel();
+        long existing = target.size();
+        int bufferSize = config.BUFFER_SIZE;
+        long read = 0;
+        long written = 0;
+
+        // The data goes through the heap anyway to be compressed, and the
+        // data of the previous split is read to be compared with it
+        BufferPool pool = BufferPool.getHeapPool();
+        ByteBuffer input = pool.acquire(bufferSize);
+        ByteBuffer output = pool.acquire(bufferSize);
+        ByteBuffer current = config.INCREMENTAL_SPLIT ? pool.acquire(bufferSize) : null;
+        Deflater deflater = new Deflater(config.COMPRESSION_LEVEL);
+        CopyEvent event = CopyEvent.start(chunk, "deflate");
+
+        try {
+            while (!deflater.finished()) {
+                if (deflater.needsInput()) {
+                    if (read < length) {
+                        // Read the next data to compress
+                        int count = (int) Math.min(bufferSize, length - read);
+                        input.clear();
+                        input.limit(count);
+
+                        if (!this.read(source, input, position + read)) {
+                            // Stop the current thread
+                            return false;
+                        }
+
+                        deflater.setInput(input.array(), input.arrayOffset(), count);
+                        read += count;
+                        total.add(count);
+                        event = event.update(count);
+                    } else {
+                        // Everything has been given to the deflater
+                        deflater.finish();
+                    }
+                }
+
+                int count = deflater.deflate(output.array(), output.arrayOffset(), bufferSize);
+                if (count == 0) {
+                    continue;
+                }
+
+                if (sum != null) {
+                    // Update the MD5 sum with the compressed data
+                    long time = metrics.begin();
+                    sum.update(output.array(), output.arrayOffset(), count);
+                    metrics.end(EngineMetrics.HASH, time);
+                }
+
+                // Write the compressed data
+                output.clear();
+                output.limit(count);
+                if (!this.put(target, output, current, offset + written, existing)) {
+                    // Stop the current thread
+                    return false;
+                }
+
+                written += count;
+            }
+        } finally {
+            // Free the native memory of the deflater
+            deflater.end();
+            pool.release(input);
+            pool.release(output);
+            if (current != null) {
+                pool.release(current);
+            }
+            event.finish();
+        }
+
+        // Write the header with the compressed length and the MD5 sum, and
+        // drop what an older chunk may have after the data
+        access.seek(header);
+        this.put(access, this.getPartHeader(number, position, length, written, (sum != null) ? sum
+                .digestToString() : null));
+        target.truncate(offset + written);
+        access.seek(offset + written);
+
+        // Success
+        return true;
+    }
+}
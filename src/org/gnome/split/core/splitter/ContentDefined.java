@@ -0,0 +1,228 @@
+/*
+ * ContentDefined.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core.splitter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.gnome.split.config.Configuration;
+import org.gnome.split.core.EngineListener;
+import org.gnome.split.core.io.BufferPool;
+import org.gnome.split.core.io.GRandomAccessFile;
+import org.gnome.split.core.utils.ContentChunker;
+
+/**
+ * Algorithm to split a file where its content tells to, instead of every
+ * <code>size</code> bytes. The chunks have <code>size</code> bytes on
+ * average, and inserting data in the file only changes the chunks around
+ * it, so the other ones can be deduplicated by backup tools. The chunks do
+ * not have any headers: a manifest, written next to them, lists where each
+ * of them starts, its length and its MD5 sum.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class ContentDefined extends DefaultSplitEngine
+{
+    /**
+     * First line of the manifest, it changes with its format.
+     */
+    private static final String MANIFEST_MAGIC = "GNOME Split manifest 1";
+
+    /**
+     * Extension of the manifest and of the chunks.
+     */
+    private static final String EXTENSION = ".cdc";
+
+    /**
+     * Used to write the manifest.
+     */
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    /**
+     * Position of the data of each chunk in the file to split, the last one
+     * being the length of the file.
+     */
+    private long[] offsets;
+
+    public ContentDefined(Configuration config, EngineListener engine, File file, long size, String destination) {
+        super(config, engine, file, size, destination);
+        this.offsets = null;
+    }
+
+    /**
+     * Find the boundaries of all the chunks before writing them. The file is
+     * read once more, but the scan is much faster than the disk and the
+     * first bytes of each chunk are skipped.
+     */
+    @Override
+    protected boolean prepareSplit() throws IOException {
+        long minimum = (config.CHUNK_MIN_SIZE > 0) ? config.CHUNK_MIN_SIZE : (size / 4);
+        long maximum = (config.CHUNK_MAX_SIZE > 0) ? config.CHUNK_MAX_SIZE : (size * 4);
+        ContentChunker chunker = new ContentChunker(minimum, size, maximum);
+
+        long length = file.length();
+        int bufferSize = config.BUFFER_SIZE;
+
+        // The scanned data is kept in the buffer, the next chunk may start
+        // in it
+        BufferPool pool = BufferPool.getHeapPool();
+        ByteBuffer buffer = pool.acquire(bufferSize);
+        long windowStart = 0;
+        long windowEnd = 0;
+
+        GRandomAccessFile access = null;
+        try {
+            access = new GRandomAccessFile(file, "r");
+            FileChannel channel = access.getChannel();
+
+            offsets = new long[16];
+            parts = 0;
+
+            long start = 0;
+            while (start < length) {
+                long end = -1;
+                long position = start + chunker.getMinimum();
+
+                while ((end < 0) && (position < length)) {
+                    if ((position < windowStart) || (position >= windowEnd)) {
+                        // Read the next part of the file
+                        int count = (int) Math.min(bufferSize, length - position);
+                        buffer.clear();
+                        buffer.limit(count);
+
+                        if (!this.read(channel, buffer, position)) {
+                            // Stopped while scanning
+                            return false;
+                        }
+
+                        windowStart = position;
+                        windowEnd = position + count;
+                    }
+
+                    int from = (int) (position - windowStart);
+                    int found = chunker.next(buffer.array(), from, (int) (windowEnd - position));
+                    if (found >= 0) {
+                        end = position + found;
+                    } else {
+                        position = windowEnd;
+                    }
+                }
+
+                if (end < 0) {
+                    // The last chunk ends with the file
+                    end = length;
+                    chunker.reset();
+                }
+
+                if ((parts + 1) >= offsets.length) {
+                    offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                }
+
+                offsets[++parts] = end;
+                start = end;
+            }
+        } finally {
+            // Give the buffer back
+            pool.release(buffer);
+
+            try {
+                if (access != null) {
+                    access.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * The boundaries of the chunks are found before writing them, so the
+     * whole file is needed.
+     */
+    @Override
+    public boolean canStream() {
+        return false;
+    }
+
+    @Override
+    protected long getPartStart(int number) {
+        return offsets[number - 1];
+    }
+
+    @Override
+    protected long getPartLength(int number) {
+        return offsets[number] - offsets[number - 1];
+    }
+
+    @Override
+    protected String getChunkName(String destination, int number) {
+        // Get the current extension
+        String current;
+        if (number >= 100) {
+            current = String.valueOf(number);
+        } else if (number >= 10) {
+            current = "0" + number;
+        } else {
+            current = "00" + number;
+        }
+
+        // Finally
+        return (destination + "." + current + EXTENSION);
+    }
+
+    @Override
+    protected boolean useChunkSums() {
+        return config.SAVE_FILE_HASH;
+    }
+
+    /**
+     * Write the manifest listing the chunks.
+     */
+    @Override
+    protected void finishSplit() throws IOException {
+        File manifest = new File(destination + EXTENSION);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(manifest), CHARSET);
+        try {
+            writer.write(MANIFEST_MAGIC + "\n");
+            writer.write("name " + file.getName() + "\n");
+            writer.write("length " + file.length() + "\n");
+
+            for (int i = 1; i <= parts; i++) {
+                String sum = (sums != null) ? sums[i - 1] : "-";
+                writer.write("part " + offsets[i - 1] + " " + this.getPartLength(i) + " " + sum + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+
+        // The manifest is part of the files created by the split
+        chunks.add(manifest.getAbsolutePath());
+    }
+}
@@ -21,19 +21,37 @@
 package org.gnome.split.core.splitter;
 
 import static org.freedesktop.bindings.Internationalization._;
-import static org.gnome.split.GnomeSplit.config;
-import static org.gnome.split.GnomeSplit.engine;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
 
+import org.gnome.split.config.Configuration;
 import org.gnome.split.core.DefaultEngine;
 import org.gnome.split.core.Engine;
+import org.gnome.split.core.EngineListener;
+import org.gnome.split.core.events.CopyEvent;
+import org.gnome.split.core.events.FileEvent;
+import org.gnome.split.core.events.HeaderEvent;
+import org.gnome.split.core.events.PartEvent;
 import org.gnome.split.core.exception.EngineException;
 import org.gnome.split.core.exception.InvalidSizeException;
+import org.gnome.split.core.io.BufferPool;
+import org.gnome.split.core.io.CopyMode;
 import org.gnome.split.core.io.GRandomAccessFile;
+import org.gnome.split.core.io.Journal;
+import org.gnome.split.core.metrics.EngineMetrics;
+import org.gnome.split.core.utils.MD5Hasher;
 
 /**
  * Define the model that all split engines should use.
@@ -58,46 +76,82 @@ public abstract class DefaultSplitEngine extends DefaultEngine
     protected String destination;
 
     /**
-     * A timer to update the progress of the view.
+     * If set, used to calculate the MD5 sum of the data while it is written
+     * in the chunks, so the file does not need to be read a second time.
      */
-    private Timer progress;
+    protected MD5Hasher hasher;
+
+    /**
+     * If set, the MD5 sum of each chunk, calculated while writing them.
+     */
+    protected String[] sums;
+
+    /**
+     * The number of chunks to create.
+     */
+    protected int parts;
+
+    /**
+     * If set, the data to split is read from this stream instead of the
+     * {@link #file}, which only gives its name. The length of the data is
+     * only known once the stream has been fully read.
+     */
+    private ReadableByteChannel stream;
+
+    /**
+     * Data read from the {@link #stream} but not written yet.
+     */
+    private ByteBuffer pending;
+
+    /**
+     * Number of bytes read from the {@link #stream}.
+     */
+    private volatile long streamed;
+
+    /**
+     * Length of the headers of the first chunk.
+     */
+    private long headerLength;
 
     /**
      * Create a new split {@link Engine engine} using a <code>file</code> to
      * split and a maximum <code>size</code> for each chunk.
      */
-    protected DefaultSplitEngine(File file, long size, String destination) {
-        super();
+    protected DefaultSplitEngine(Configuration config, EngineListener engine, File file, long size,
+            String destination) {
+        super(config, engine);
         this.directory = destination.substring(0, destination.lastIndexOf(File.separator));
         this.file = file;
         this.size = size;
         this.destination = destination;
-        this.progress = null;
+        this.hasher = null;
+        this.sums = null;
+        this.parts = (size > 0) ? (int) ((file.length() + size - 1) / size) : 0;
+        this.stream = null;
+        this.pending = null;
+        this.streamed = 0;
+        this.headerLength = 0;
     }
 
     @Override
     public void run() {
-        synchronized (mutex) {
-            try {
-                // Invalid size
-                if (size == -1) {
-                    throw new InvalidSizeException();
-                }
-
-                // Start the indicators
-                this.startProgressUpdater();
-                this.startSpeedCalculator();
-
-                // Split the file
-                this.split();
-            } catch (Exception e) {
-                // Handle the error
-                this.fireEngineError(e);
-            } finally {
-                // Stop the indicators
-                this.stopProgressUpdater();
-                this.stopSpeedCalculator();
+        try {
+            // Invalid size
+            if (size == -1) {
+                throw new InvalidSizeException();
             }
+
+            // Start the indicators
+            this.startSampling();
+
+            // Split the file
+            this.split();
+        } catch (Exception e) {
+            // Handle the error
+            this.fireEngineError(e);
+        } finally {
+            // Stop the indicators
+            this.stopSampling();
         }
     }
 
@@ -115,6 +169,11 @@ public abstract class DefaultSplitEngine extends DefaultEngine
             for (String chunk : chunks) {
                 new File(chunk).delete();
             }
+
+            // Nothing is left to resume
+            if (journal != null) {
+                journal.delete();
+            }
         }
     }
 
@@ -125,37 +184,659 @@ public abstract class DefaultSplitEngine extends DefaultEngine
 
     @Override
     public long getFileLength() {
-        return file.length();
+        return (stream != null) ? streamed : file.length();
+    }
+
+    /**
+     * Split the data read from the <code>stream</code> instead of the file,
+     * which then only gives the name of the data. A new chunk is started
+     * every <code>size</code> bytes until the end of the stream, and the
+     * headers of the first chunk are written again once the number of
+     * chunks and the length of the data are known. The chunks are written
+     * one after the other, and such a split can't be resumed.
+     */
+    public void setStream(ReadableByteChannel stream) {
+        this.stream = stream;
+        this.parts = 0;
+    }
+
+    /**
+     * Tell if the format can split data whose length is only known once it
+     * has been read (see {@link #setStream(ReadableByteChannel)}). It is
+     * possible if only the headers of the first chunk depend on the length.
+     */
+    public boolean canStream() {
+        return true;
     }
 
     /**
-     * Get a filename for the current chunk using the file number.
+     * Get a filename for the current chunk using the file number (starting
+     * at 1).
      */
     protected abstract String getChunkName(String destination, int number);
 
+    /**
+     * Write the headers of the format at the beginning of the first chunk.
+     * By default, no headers are written.
+     */
+    protected void writeHeaders(DataOutput output) throws IOException {
+
+    }
+
+    /**
+     * Tell if the MD5 sum of the whole file should be calculated while
+     * writing the chunks. The sum is then available in the {@link #hasher}
+     * when the chunks are written.
+     */
+    protected boolean useFileSum() {
+        return false;
+    }
+
+    /**
+     * Tell if the MD5 sum of each chunk (including its headers) should be
+     * calculated while writing it. The sums are then available in the
+     * {@link #sums} array when the chunks are written.
+     */
+    protected boolean useChunkSums() {
+        return false;
+    }
+
+    /**
+     * Called before anything is written, so the format can decide where the
+     * chunks start (it must update {@link #parts} in this case). It returns
+     * <code>false</code> if the action has been stopped meanwhile. By
+     * default, the chunks all have the maximum size (except the last one).
+     */
+    protected boolean prepareSplit() throws IOException {
+        return true;
+    }
+
+    /**
+     * Get the position, in the file to split, of the data of the chunk
+     * <code>number</code> (starting at 1).
+     */
+    protected long getPartStart(int number) {
+        return (number - 1) * size;
+    }
+
+    /**
+     * Get the length of the data of the chunk <code>number</code> (starting
+     * at 1). It never goes further than the end of the file to split.
+     */
+    protected long getPartLength(int number) {
+        return Math.min(size, file.length() - this.getPartStart(number));
+    }
+
+    /**
+     * Write the data of the chunk <code>number</code> at the current position
+     * of its file (<code>access</code>), after its headers. If
+     * <code>chunkHasher</code> is set, it is updated with the data. By
+     * default, the data is copied as it is. It returns <code>true</code> if
+     * the writing was fully performed, else it returns <code>false</code>.
+     */
+    protected boolean writeData(FileChannel source, int number, GRandomAccessFile access, MD5Hasher chunkHasher)
+            throws IOException {
+        String chunk = this.getChunkName(destination, number);
+        if (stream != null) {
+            // The data comes from the stream, not from the file
+            return this.copyStream(chunk, access.getChannel(), chunkHasher);
+        }
+
+        long position = this.getPartStart(number);
+        long length = this.getPartLength(number);
+
+        return this.copy(chunk, source, position, length, access.getChannel(), chunkHasher);
+    }
+
+    /**
+     * Called once all the chunks have been written, so the format can write
+     * its MD5 sums. By default, nothing is done.
+     */
+    protected void finishSplit() throws IOException {
+
+    }
+
     /**
      * Split a file into smaller parts.
      */
-    public abstract void split() throws IOException, EngineException;
+    public void split() throws IOException, EngineException {
+        if (!this.prepareSplit()) {
+            // Notify the view
+            this.fireEngineStopped();
+            return;
+        }
+
+        if (this.useFileSum()) {
+            // Calculate the MD5 sum while writing the chunks
+            hasher = new MD5Hasher(config.BUFFER_SIZE);
+            hasher.reset();
+        }
+
+        if (this.useChunkSums()) {
+            // One MD5 sum for each chunk
+            sums = new String[parts];
+        }
+
+        if (config.RESUME_JOBS && (stream == null)) {
+            // Keep the chunks written by a previous run
+            this.openJournal();
+        }
+
+        try {
+            boolean run;
+            int threads = this.getWorkerThreads();
+            if (stream != null) {
+                // The number of chunks is not known yet, they are written
+                // as the data comes
+                run = this.splitStream();
+            } else if ((threads > 1) && (parts > 1) && (hasher == null)) {
+                // Write several chunks at the same time (the MD5 sum of the
+                // whole file needs the data in order, so it can't be done in
+                // this case)
+                run = this.splitParallel(Math.min(threads, parts));
+            } else {
+                // Write the chunks one after the other
+                run = this.splitSequential();
+            }
+
+            // Writing stopped
+            if (!run) {
+                return;
+            }
+
+            // Let the format add its MD5 sums
+            long time = metrics.begin();
+            HeaderEvent event = HeaderEvent.start("write", destination);
+            this.finishSplit();
+            event.commit();
+            metrics.end(EngineMetrics.HEADERS, time);
+
+            if (config.INCREMENTAL_SPLIT) {
+                // Remove the chunks left by a previous split of a bigger file
+                this.removeChunksAfter(parts);
+            }
+
+            if (journal != null) {
+                // The split does not need to be resumed anymore
+                journal.delete();
+            }
+        } finally {
+            if (journal != null) {
+                journal.close();
+            }
+        }
+
+        // Notify the end of the split
+        this.fireEngineEnded();
+    }
+
+    /**
+     * Read the journal of a previous run of the same split, and keep the
+     * chunks which are still on the disk as they were written.
+     */
+    private void openJournal() throws IOException {
+        journal = new Journal(destination, "split " + file.getAbsolutePath() + " " + file.length() + " "
+                + file.lastModified() + " " + size + " " + config.SAVE_FILE_HASH + " "
+                + this.getClass().getSimpleName());
+        journal.load();
+
+        for (int i = 1; i <= parts; i++) {
+            journal.check(i, new File(this.getChunkName(destination, i)).length());
+        }
+
+        journal.open();
+    }
+
+    /**
+     * Remove the chunks which exist after the chunk <code>last</code>.
+     */
+    private void removeChunksAfter(int last) {
+        int number = last + 1;
+        while (new File(this.getChunkName(destination, number)).delete()) {
+            number++;
+        }
+    }
+
+    /**
+     * Write all the chunks one after the other. It returns <code>true</code>
+     * if the split was fully performed, else it returns <code>false</code>.
+     */
+    private boolean splitSequential() throws IOException {
+        GRandomAccessFile toSplit = null;
+        try {
+            // Open a new file
+            long time = metrics.begin();
+            FileEvent event = FileEvent.start("open", file.getAbsolutePath());
+            toSplit = new GRandomAccessFile(file, "r");
+            event.commit();
+            metrics.end(EngineMetrics.OPEN, time);
+
+            // Reused for each chunk
+            MD5Hasher chunkHasher = (sums != null) ? new MD5Hasher(config.BUFFER_SIZE) : hasher;
+
+            for (int i = 1; i <= parts; i++) {
+                String chunk = this.getChunkName(destination, i);
+                chunks.add(new File(chunk).getAbsolutePath());
+
+                // Write the chunk
+                if (!this.writePart(toSplit.getChannel(), i, chunkHasher)) {
+                    // Notify the view
+                    this.fireEngineStopped();
+                    return false;
+                }
+            }
+        } finally {
+            long time = metrics.begin();
+            FileEvent event = FileEvent.start("close", file.getAbsolutePath());
+            try {
+                // Close the file to split
+                if (toSplit != null) {
+                    toSplit.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            event.commit();
+            metrics.end(EngineMetrics.CLOSE, time);
+        }
+
+        return true;
+    }
+
+    /**
+     * Write the chunks one after the other using the data of the stream,
+     * then write the headers of the first chunk again. It returns
+     * <code>true</code> if the split was fully performed, else it returns
+     * <code>false</code>.
+     */
+    private boolean splitStream() throws IOException {
+        // Reused for each chunk
+        MD5Hasher chunkHasher = (sums != null) ? new MD5Hasher(config.BUFFER_SIZE) : hasher;
+
+        // The MD5 sum can only be calculated with a buffer backed by an
+        // array
+        BufferPool pool = (chunkHasher != null) ? BufferPool.getHeapPool() : BufferPool.getDirectPool();
+        pending = pool.acquire(config.BUFFER_SIZE);
+
+        try {
+            parts = 0;
+            while (true) {
+                // Read the first data of the chunk before creating it, so no
+                // empty chunk is created at the end of the stream
+                if (!this.readStream((int) Math.min(config.BUFFER_SIZE, size))) {
+                    // Notify the view
+                    this.fireEngineStopped();
+                    return false;
+                }
+
+                if (!pending.hasRemaining()) {
+                    // End of the stream
+                    break;
+                }
+
+                parts++;
+                if ((sums != null) && (parts > sums.length)) {
+                    // One more MD5 sum to keep
+                    sums = Arrays.copyOf(sums, Math.max(16, sums.length * 2));
+                }
+
+                String chunk = this.getChunkName(destination, parts);
+                chunks.add(new File(chunk).getAbsolutePath());
+
+                // Write the chunk
+                if (!this.writePart(null, parts, chunkHasher)) {
+                    // Notify the view
+                    this.fireEngineStopped();
+                    return false;
+                }
+            }
+        } finally {
+            // Give the buffer back
+            pool.release(pending);
+            pending = null;
+        }
+
+        if (sums != null) {
+            // Only keep the MD5 sums of the written chunks
+            sums = Arrays.copyOf(sums, parts);
+        }
+
+        if (parts > 0) {
+            // The number of chunks and the length are known now
+            long time = metrics.begin();
+            HeaderEvent event = HeaderEvent.start("write", chunks.get(0));
+            this.rewriteHeaders();
+            event.commit();
+            metrics.end(EngineMetrics.HEADERS, time);
+        }
+
+        return true;
+    }
+
+    /**
+     * Read at most <code>count</code> bytes of the stream in the
+     * {@link #pending} buffer, fewer only at the end of the stream. The
+     * buffer is then ready to be written. It returns <code>true</code> if
+     * the data has been read, else it returns <code>false</code>.
+     */
+    private boolean readStream(int count) throws IOException {
+        pending.clear();
+        pending.limit(count);
+
+        while (pending.hasRemaining()) {
+            if (!this.waitIfPaused()) {
+                // Stop the current thread
+                return false;
+            }
+
+            long time = metrics.begin();
+            int read = stream.read(pending);
+            metrics.endRead(time);
+
+            if (read < 0) {
+                // End of the stream
+                break;
+            }
+        }
+
+        pending.flip();
+        return true;
+    }
+
+    /**
+     * Write the headers of the first chunk again, with the real number of
+     * chunks and length of the data. They must keep the same length since
+     * the data follows them. The MD5 sum of the chunk, if needed, is
+     * calculated again.
+     */
+    private void rewriteHeaders() throws IOException {
+        if (headerLength == 0) {
+            // No headers to update
+            return;
+        }
+
+        File chunk = new File(chunks.get(0));
+        GRandomAccessFile access = null;
+        try {
+            access = new GRandomAccessFile(chunk, "rw");
+            this.putHeaders(access);
+
+            if (access.getFilePointer() != headerLength) {
+                throw new IOException("The headers of " + chunk.getName() + " do not fit in their place");
+            }
+        } finally {
+            try {
+                // Close the part file
+                if (access != null) {
+                    access.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        if (sums != null) {
+            // The headers are part of the MD5 sum of the chunk
+            sums[0] = new MD5Hasher(config.BUFFER_SIZE).hashToString(chunk);
+        }
+    }
 
     /**
-     * Start the progress updater which should notify the view from the
-     * progress of the action.
+     * Write all the chunks using several threads. The file to split is read
+     * with positional reads so all the threads can share the same channel.
+     * It returns <code>true</code> if the split was fully performed, else it
+     * returns <code>false</code>.
      */
-    private void startProgressUpdater() {
-        // Create a new timer and start its task
-        progress = new Timer("Progress updater");
-        progress.scheduleAtFixedRate(new ProgressUpdaterTask(), 1, 250);
+    private boolean splitParallel(int threads) throws IOException {
+        GRandomAccessFile toSplit = null;
+        try {
+            // Open a new file
+            long time = metrics.begin();
+            FileEvent event = FileEvent.start("open", file.getAbsolutePath());
+            toSplit = new GRandomAccessFile(file, "r");
+            event.commit();
+            metrics.end(EngineMetrics.OPEN, time);
+            final FileChannel source = toSplit.getChannel();
+
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for (int i = 1; i <= parts; i++) {
+                // Keep the chunks in order, whatever the order they are
+                // written
+                chunks.add(new File(this.getChunkName(destination, i)).getAbsolutePath());
+
+                final int number = i;
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        // Each thread needs its own hasher
+                        MD5Hasher chunkHasher = (sums != null) ? new MD5Hasher(config.BUFFER_SIZE) : null;
+                        writePart(source, number, chunkHasher);
+                        return null;
+                    }
+                });
+            }
+
+            // Write the chunks
+            this.runWorkers(tasks, threads, "Split worker");
+
+            if (this.isStopped()) {
+                // Notify the view
+                this.fireEngineStopped();
+                return false;
+            }
+        } finally {
+            long time = metrics.begin();
+            FileEvent event = FileEvent.start("close", file.getAbsolutePath());
+            try {
+                // Close the file to split
+                if (toSplit != null) {
+                    toSplit.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            event.commit();
+            metrics.end(EngineMetrics.CLOSE, time);
+        }
+
+        return true;
     }
 
     /**
-     * Stop the progress updater.
+     * Create the chunk <code>number</code> and copy its data from the file to
+     * split, using positional reads. If <code>chunkHasher</code> is set, it
+     * is updated with the data. It returns <code>true</code> if the writing
+     * was fully performed, else it returns <code>false</code>.
      */
-    private void stopProgressUpdater() {
-        // Stop the timer
-        if (progress != null) {
-            progress.cancel();
-            progress = null;
+    private boolean writePart(FileChannel source, int number, MD5Hasher chunkHasher) throws IOException {
+        if ((journal != null) && journal.isComplete(number) && ((sums == null) || (journal.getSum(number) != null))) {
+            // Written by a previous run
+            return this.skipPart(source, number, chunkHasher);
+        }
+
+        GRandomAccessFile access = null;
+        File chunk = new File(this.getChunkName(destination, number));
+        long start = metrics.startPart(number);
+        PartEvent part = PartEvent.start("write", chunk.getPath(), number);
+        try {
+            // Open the part
+            FileEvent event = FileEvent.start("open", chunk.getPath());
+            access = new GRandomAccessFile(chunk, "rw");
+            if (!config.INCREMENTAL_SPLIT || (stream != null)) {
+                // Do not keep anything from an older chunk
+                access.setLength(0);
+            }
+            event.commit();
+            metrics.end(EngineMetrics.OPEN, start);
+
+            // Notify the view from a new part
+            this.fireEnginePartCreated(chunk.getName());
+
+            if (sums != null) {
+                // Each chunk has its own MD5 sum
+                chunkHasher.reset();
+            }
+
+            if (number == 1) {
+                // Write header on the first part
+                long time = metrics.begin();
+                HeaderEvent headers = HeaderEvent.start("write", chunk.getPath());
+                this.putHeaders(access);
+                headerLength = access.getFilePointer();
+
+                if ((sums != null) && (access.getFilePointer() > 0)) {
+                    // The header is part of the MD5 sum of the chunk
+                    this.hashHeaders(access, chunkHasher);
+                }
+                headers.commit();
+                metrics.end(EngineMetrics.HEADERS, time);
+            }
+
+            // Write the chunk
+            long data = access.getFilePointer();
+            if (!this.writeData(source, number, access, chunkHasher)) {
+                return false;
+            }
+            part.bytes = access.getFilePointer() - data;
+
+            if (sums != null) {
+                // Keep the MD5 sum of the chunk
+                long time = metrics.begin();
+                sums[number - 1] = chunkHasher.digestToString();
+                metrics.end(EngineMetrics.HASH, time);
+            }
+
+            if (journal != null) {
+                // The chunk must be on the disk before it is recorded
+                access.getChannel().force(true);
+            }
+
+            // Notify the view from a written part
+            part.completed = true;
+            this.fireEnginePartWritten(chunk.getName());
+        } finally {
+            long time = metrics.begin();
+            FileEvent event = FileEvent.start("close", chunk.getPath());
+            try {
+                // Close the part file
+                if (access != null) {
+                    access.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            event.commit();
+            metrics.end(EngineMetrics.CLOSE, time);
+            part.commit();
+        }
+
+        if (journal != null) {
+            // Do not write the chunk again if the split is resumed
+            journal.complete(number, chunk.length(), (sums != null) ? sums[number - 1] : null);
+        }
+
+        metrics.endPart(number, start);
+        return true;
+    }
+
+    /**
+     * Handle the chunk <code>number</code> which has been written by a
+     * previous run. The chunk itself is never read: its MD5 sum, if the
+     * format stores one for each chunk, comes from the journal. The state of
+     * the MD5 sum of the whole file can't be saved in the journal though, so
+     * the formats which store that sum read the data of the chunk again
+     * from the file to split (nothing is written). It returns
+     * <code>true</code> if the chunk was fully handled, else it returns
+     * <code>false</code>.
+     */
+    private boolean skipPart(FileChannel source, int number, MD5Hasher chunkHasher) throws IOException {
+        String chunk = new File(this.getChunkName(destination, number)).getName();
+        this.fireEnginePartCreated(chunk);
+
+        long position = this.getPartStart(number);
+        long length = this.getPartLength(number);
+        if (!this.skip(source, position, length, (sums == null) ? chunkHasher : null)) {
+            return false;
+        }
+
+        if (sums != null) {
+            // Keep the MD5 sum of the chunk
+            sums[number - 1] = journal.getSum(number);
+        }
+
+        this.fireEnginePartWritten(chunk);
+        return true;
+    }
+
+    /**
+     * Put the headers of the format at the beginning of the chunk, and leave
+     * the file pointer at their end. If the chunk already starts with the
+     * same headers (the file is split again), they are not written.
+     */
+    private void putHeaders(GRandomAccessFile access) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        this.writeHeaders(new DataOutputStream(buffer));
+
+        access.seek(0);
+        this.put(access, buffer.toByteArray());
+    }
+
+    /**
+     * Write the <code>data</code> at the file pointer of the chunk, and leave
+     * the file pointer after it. If the chunk already holds the same bytes
+     * there (the file is split again), they are not written.
+     */
+    protected void put(GRandomAccessFile access, byte[] data) throws IOException {
+        long position = access.getFilePointer();
+
+        if ((access.length() - position) >= data.length) {
+            // Compare with the bytes of the previous split
+            byte[] previous = new byte[data.length];
+            access.readFully(previous);
+            if (Arrays.equals(data, previous)) {
+                return;
+            }
+
+            access.seek(position);
+        }
+
+        access.write(data);
+    }
+
+    /**
+     * Include the header which has just been written in the MD5 sum of the
+     * chunk.
+     */
+    private void hashHeaders(GRandomAccessFile access, MD5Hasher chunkHasher) throws IOException {
+        byte[] header = new byte[(int) access.getFilePointer()];
+
+        // Read the header back, this leaves the file pointer at its end
+        access.seek(0);
+        access.readFully(header);
+
+        // Update the MD5 sum
+        chunkHasher.update(header, 0, header.length);
+    }
+
+    /**
+     * Append <code>data</code> at the end of the chunk <code>number</code>.
+     */
+    protected void appendToChunk(int number, byte[] data) throws IOException {
+        GRandomAccessFile access = null;
+        try {
+            // Open the part again to add the data
+            access = new GRandomAccessFile(chunks.get(number - 1), "rw");
+            access.seek(access.length());
+            access.write(data);
+        } finally {
+            try {
+                // Close the part file
+                if (access != null) {
+                    access.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
     }
 
@@ -177,7 +858,7 @@ public abstract class DefaultSplitEngine extends DefaultEngine
      * Notify the view that the MD5 sum calculation has started.
      */
     protected void fireMD5SumStarted() {
-        this.stopProgressUpdater();
+        hashing = true;
         engine.engineMD5SumStarted();
     }
 
@@ -185,7 +866,7 @@ public abstract class DefaultSplitEngine extends DefaultEngine
      * Notify the view that the MD5 sum calculation has ended.
      */
     protected void fireMD5SumEnded() {
-        this.startProgressUpdater();
+        hashing = false;
         engine.engineMD5SumEnded();
     }
 
@@ -212,49 +893,138 @@ public abstract class DefaultSplitEngine extends DefaultEngine
     }
 
     /**
-     * Notify the view that a part of the file has been read.
-     */
-    protected void fireEngineDone(long done, long total) {
-        engine.engineDone(done, total);
-    }
-
-    /**
-     * Write a chunk by reading the file to split and copying its content. It
-     * returns <code>true</code> if the writing was fully performed, else it
+     * Copy <code>length</code> bytes of the file to split, starting at
+     * <code>position</code>, at the current position of the chunk. The file
+     * to split is only read with positional reads, so several threads can
+     * use the same channel. The copy is recorded for the <code>chunk</code>.
+     * It returns <code>true</code> if the copy was fully performed, else it
      * returns <code>false</code>.
      */
-    protected boolean writeChunk(GRandomAccessFile split, GRandomAccessFile chunk) throws IOException {
-        // Needed variables to know when the chunk writing must be stopped
+    private boolean copy(String chunk, FileChannel source, long position, long length, FileChannel target,
+            MD5Hasher chunkHasher) throws IOException {
+        if (config.INCREMENTAL_SPLIT) {
+            // Compare the data with the chunk of the previous split
+            return this.update(chunk, source, position, length, target, chunkHasher);
+        }
+
+        if ((config.COPY_MODE == CopyMode.TRANSFER) && (chunkHasher == null)) {
+            // Let the system copy the data for us (not possible if the data
+            // has to be read to calculate the MD5 sum)
+            return this.transfer(chunk, source, position, length, target);
+        }
+
+        if (config.COPY_MODE == CopyMode.MAPPED) {
+            // Copy the data using memory mapped windows of both files, the
+            // data is written after the headers of the chunk
+            long offset = target.position();
+            boolean done = this.mapCopy(chunk, source, position, length, target, offset, chunkHasher);
+            target.position(offset + length);
+            return done;
+        }
+
+        // Needed variables to know when the chunk writing must be stopped,
+        // the data is written after the headers of the chunk
         int bufferSize = config.BUFFER_SIZE;
+        long offset = target.position();
         long read = 0;
-        byte[] buffer = null;
-
-        while (read < size) {
-            if (paused) {
-                try {
-                    // Pause the current thread
-                    mutex.wait();
-                } catch (InterruptedException e) {
-                    // Drop this exception
+
+        // Reuse a buffer instead of allocating one for each read, the MD5
+        // sum can only be calculated with a buffer backed by an array
+        BufferPool pool = (chunkHasher != null) ? BufferPool.getHeapPool() : BufferPool.getDirectPool();
+        ByteBuffer buffer = pool.acquire(bufferSize);
+        CopyEvent event = CopyEvent.start(chunk, "stream");
+
+        try {
+            while (read < length) {
+                // Define how many bytes to copy
+                int count = (bufferSize > (length - read)) ? (int) (length - read) : bufferSize;
+                buffer.clear();
+                buffer.limit(count);
+
+                // Read data (a short file throws an EOFException)
+                if (!this.read(source, buffer, position + read)) {
+                    // Stop the current thread
+                    return false;
                 }
-            }
 
-            if (stopped) {
-                // Stop the current thread
-                this.fireEngineStopped();
-                return false;
+                if (chunkHasher != null) {
+                    // Update the MD5 sum with the same data
+                    long time = metrics.begin();
+                    chunkHasher.update(buffer.array(), 0, count);
+                    metrics.end(EngineMetrics.HASH, time);
+                }
+
+                // Write data
+                buffer.flip();
+                if (!this.write(target, buffer, offset + read)) {
+                    // Stop the current thread
+                    return false;
+                }
+
+                // Update read and write status
+                read += count;
+                total.add(count);
+                event = event.update(count);
             }
 
-            // Define a new buffer size
-            buffer = new byte[(bufferSize > (size - read) ? (int) (size - read) : bufferSize)];
+            // Positional writes do not move the chunk position
+            target.position(offset + length);
+        } finally {
+            // Give the buffer back
+            pool.release(buffer);
+            event.finish();
+        }
+
+        // Success
+        return true;
+    }
+
+    /**
+     * Copy the data of the stream at the current position of the chunk,
+     * until the chunk is full or the stream ends. The first data of the
+     * chunk is already in the {@link #pending} buffer. The copy is recorded
+     * for the <code>chunk</code>. It returns <code>true</code> if the copy
+     * was fully performed, else it returns <code>false</code>.
+     */
+    private boolean copyStream(String chunk, FileChannel target, MD5Hasher chunkHasher) throws IOException {
+        long offset = target.position();
+        long written = 0;
+
+        CopyEvent event = CopyEvent.start(chunk, "stream");
+        try {
+            while (pending.hasRemaining()) {
+                int count = pending.remaining();
+
+                if (chunkHasher != null) {
+                    // Update the MD5 sum with the same data
+                    long time = metrics.begin();
+                    chunkHasher.update(pending.array(), pending.arrayOffset(), count);
+                    metrics.end(EngineMetrics.HASH, time);
+                }
+
+                // Write data
+                if (!this.write(target, pending, offset + written)) {
+                    // Stop the current thread
+                    return false;
+                }
 
-            // Read and write data
-            split.read(buffer);
-            chunk.write(buffer);
+                // Update read and write status
+                written += count;
+                streamed += count;
+                total.add(count);
+                event = event.update(count);
 
-            // Update read and write status
-            read += buffer.length;
-            total += buffer.length;
+                // Read the next data, if the chunk is not full yet
+                if (!this.readStream((int) Math.min(config.BUFFER_SIZE, size - written))) {
+                    // Stop the current thread
+                    return false;
+                }
+            }
+
+            // Positional writes do not move the chunk position
+            target.position(offset + written);
+        } finally {
+            event.finish();
         }
 
         // Success
@@ -262,19 +1032,122 @@ public abstract class DefaultSplitEngine extends DefaultEngine
     }
 
     /**
-     * A class that notify the view from the progress of the action.
-     * 
-     * @author Guillaume Mazoyer
+     * Copy a part of the file to split by transferring it directly into the
+     * chunk. The data does not go through the Java heap so the kernel can use
+     * a zero-copy transfer. The copy is done by slices so the action can
+     * still be paused or stopped. The copy is recorded for the
+     * <code>chunk</code>. It returns <code>true</code> if the copy was fully
+     * performed, else it returns <code>false</code>.
      */
-    private class ProgressUpdaterTask extends TimerTask
-    {
-        private ProgressUpdaterTask() {
+    private boolean transfer(String chunk, FileChannel source, long position, long length, FileChannel target)
+            throws IOException {
+        long read = 0;
 
+        CopyEvent event = CopyEvent.start(chunk, "transfer");
+        try {
+            while (read < length) {
+                if (!this.waitIfPaused()) {
+                    // Stop the current thread
+                    return false;
+                }
+
+                // Transfer a slice of data (may be less than requested)
+                long time = metrics.begin();
+                long transferred = source.transferTo(position + read, Math.min(SLICE, length - read), target);
+                metrics.endWrite(time);
+                if (transferred <= 0) {
+                    // The file to split is shorter than expected
+                    throw new EOFException();
+                }
+
+                // Update read and write status
+                read += transferred;
+                total.add(transferred);
+                event = event.update(transferred);
+            }
+        } finally {
+            event.finish();
         }
 
-        @Override
-        public void run() {
-            fireEngineDone(total, file.length());
+        // Success
+        return true;
+    }
+
+    /**
+     * Copy <code>length</code> bytes of the file to split, starting at
+     * <code>position</code>, at the current position of a chunk which
+     * already holds the data of a previous split. Only the buffers which
+     * differ are written, then the chunk is cut after the data (the format
+     * adds its MD5 sums again). The copy is recorded for the
+     * <code>chunk</code>. It returns <code>true</code> if the copy was fully
+     * performed, else it returns <code>false</code>.
+     */
+    private boolean update(String chunk, FileChannel source, long position, long length, FileChannel target,
+            MD5Hasher chunkHasher) throws IOException {
+        int bufferSize = config.BUFFER_SIZE;
+        long offset = target.position();
+        long existing = target.size();
+        long read = 0;
+
+        // One buffer for the new data and one for the old data
+        BufferPool pool = BufferPool.getHeapPool();
+        ByteBuffer buffer = pool.acquire(bufferSize);
+        ByteBuffer current = pool.acquire(bufferSize);
+        CopyEvent event = CopyEvent.start(chunk, "update");
+
+        try {
+            while (read < length) {
+                // Define how many bytes to compare
+                int count = (bufferSize > (length - read)) ? (int) (length - read) : bufferSize;
+                buffer.clear();
+                buffer.limit(count);
+
+                // Read data (a short file throws an EOFException)
+                if (!this.read(source, buffer, position + read)) {
+                    // Stop the current thread
+                    return false;
+                }
+
+                if (chunkHasher != null) {
+                    // Update the MD5 sum with the same data
+                    long time = metrics.begin();
+                    chunkHasher.update(buffer.array(), 0, count);
+                    metrics.end(EngineMetrics.HASH, time);
+                }
+
+                // Read the same data in the chunk, if it is long enough
+                current.clear();
+                current.limit((int) Math.max(0, Math.min(count, existing - (offset + read))));
+                if (!this.read(target, current, offset + read)) {
+                    // Stop the current thread
+                    return false;
+                }
+
+                // Write data only if it has changed
+                buffer.flip();
+                current.flip();
+                if (!buffer.equals(current) && !this.write(target, buffer, offset + read)) {
+                    // Stop the current thread
+                    return false;
+                }
+
+                // Update read and write status
+                read += count;
+                total.add(count);
+                event = event.update(count);
+            }
+
+            // Remove what the previous split wrote after the data
+            target.truncate(offset + length);
+            target.position(offset + length);
+        } finally {
+            // Give the buffers back
+            pool.release(buffer);
+            pool.release(current);
+            event.finish();
         }
+
+        // Success
+        return true;
     }
 }
@@ -21,10 +21,9 @@
 package org.gnome.split.core.splitter;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.IOException;
 
-import org.gnome.split.core.io.GRandomAccessFile;
+import org.gnome.split.config.Configuration;
+import org.gnome.split.core.EngineListener;
 
 /**
  * Algorithm to split files with an algorithm which does not use any headers
@@ -34,11 +33,8 @@ import org.gnome.split.core.io.GRandomAccessFile;
  */
 public final class Generic extends DefaultSplitEngine
 {
-    private int parts;
-
-    public Generic(File file, long size, String destination) {
-        super(file, size, destination);
-        parts = (int) Math.ceil((float) file.length() / (float) size);
+    public Generic(Configuration config, EngineListener engine, File file, long size, String destination) {
+        super(config, engine, file, size, destination);
     }
 
     @Override
@@ -56,61 +52,4 @@ public final class Generic extends DefaultSplitEngine
         // Finally
         return (destination + "." + current);
     }
-
-    @Override
-    public void split() throws IOException, FileNotFoundException {
-        GRandomAccessFile toSplit = null;
-        boolean run = true;
-        try {
-            // Open a new file
-            toSplit = new GRandomAccessFile(file, "r");
-
-            for (int i = 1; i <= parts; i++) {
-                GRandomAccessFile access = null;
-                File chunk = null;
-                try {
-                    // Open the part
-                    chunk = new File(this.getChunkName(destination, i));
-                    access = new GRandomAccessFile(chunk, "rw");
-
-                    // Notify the view from a new part
-                    chunks.add(chunk.getAbsolutePath());
-                    this.fireEnginePartCreated(chunk.getName());
-
-                    if (i == parts) {
-                        // Update size to stop the split correctly
-                        size = file.length() - total;
-                    }
-
-                    // Write the chunk
-                    run = this.writeChunk(toSplit, access);
-
-                    // Writing stopped
-                    if (!run) {
-                        return;
-                    }
-
-                    // Notify the view from a written part
-                    this.fireEnginePartWritten(chunk.getName());
-                } finally {
-                    try {
-                        // Close the part file
-                        access.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
-
-            // Notify the end of the split
-            this.fireEngineEnded();
-        } finally {
-            try {
-                // Close the part file
-                toSplit.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-    }
 }
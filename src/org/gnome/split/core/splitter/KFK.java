@@ -21,10 +21,9 @@
 package org.gnome.split.core.splitter;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.IOException;
 
-import org.gnome.split.core.io.GRandomAccessFile;
+import org.gnome.split.config.Configuration;
+import org.gnome.split.core.EngineListener;
 
 /**
  * Algorithm to split a file with the KFK algorithm.
@@ -33,72 +32,13 @@ import org.gnome.split.core.io.GRandomAccessFile;
  */
 public final class KFK extends DefaultSplitEngine
 {
-    private int parts;
-
-    public KFK(File file, long size, String destination) {
-        super(file, size, destination);
-        parts = (int) Math.ceil((float) file.length() / (float) size);
+    public KFK(Configuration config, EngineListener engine, File file, long size, String destination) {
+        super(config, engine, file, size, destination);
     }
 
     @Override
     protected String getChunkName(String destination, int number) {
-        return (destination + ".kk" + number);
-    }
-
-    @Override
-    public void split() throws IOException, FileNotFoundException {
-        GRandomAccessFile toSplit = null;
-        boolean run = true;
-        try {
-            // Open a new file
-            toSplit = new GRandomAccessFile(file, "r");
-
-            for (int i = 0; i < parts; i++) {
-                GRandomAccessFile access = null;
-                File chunk = null;
-                try {
-                    // Open the part
-                    chunk = new File(this.getChunkName(destination, i));
-                    access = new GRandomAccessFile(chunk, "rw");
-
-                    // Notify the view from a new part
-                    chunks.add(chunk.getAbsolutePath());
-                    this.fireEnginePartCreated(chunk.getName());
-
-                    if (i == parts) {
-                        // Update size to stop the split correctly
-                        size = file.length() - total;
-                    }
-
-                    // Write the chunk
-                    run = this.writeChunk(toSplit, access);
-
-                    // Writing stopped
-                    if (!run) {
-                        return;
-                    }
-
-                    // Notify the view from a written part
-                    this.fireEnginePartWritten(chunk.getName());
-                } finally {
-                    try {
-                        // Close the part file
-                        access.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
-
-            // Notify the end of the split
-            this.fireEngineEnded();
-        } finally {
-            try {
-                // Close the part file
-                toSplit.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+        // The KFK parts are numbered from 0
+        return (destination + ".kk" + (number - 1));
     }
 }
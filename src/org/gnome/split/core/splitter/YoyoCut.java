@@ -20,13 +20,13 @@
  */
 package org.gnome.split.core.splitter;
 
-import static org.gnome.split.GnomeSplit.config;
-
+import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
 
+import org.gnome.split.config.Configuration;
+import org.gnome.split.core.EngineListener;
 import org.gnome.split.core.io.GRandomAccessFile;
-import org.gnome.split.core.utils.MD5Hasher;
 
 /**
  * Algorithm to split a file with the YoyoCut algorithm.
@@ -35,20 +35,49 @@ import org.gnome.split.core.utils.MD5Hasher;
  */
 public final class YoyoCut extends DefaultSplitEngine
 {
-    private int parts;
+    /**
+     * Written in the header until the MD5 sum is known.
+     */
+    private static final String MD5_PLACEHOLDER = "00000000000000000000000000000000";
 
-    public YoyoCut(File file, long size, String destination) {
-        super(file, size, destination);
-        parts = (int) Math.ceil((float) file.length() / (float) size);
+    public YoyoCut(Configuration config, EngineListener engine, File file, long size, String destination) {
+        super(config, engine, file, size, destination);
+    }
+
+    /**
+     * The header needs the extension of the file, and its length depends on
+     * the number of chunks.
+     */
+    @Override
+    public boolean canStream() {
+        return false;
     }
 
     /**
      * Write the GNOME Split header at the beginning of a file.
      */
-    private void writeHeaders(GRandomAccessFile access) throws IOException {
-        // Write the extension
+    @Override
+    protected void writeHeaders(DataOutput output) throws IOException {
+        // Write the extension and the number of chunks
+        output.write(this.getHeaderStart().getBytes());
+
+        // Should we save MD5 sum?
+        if (config.SAVE_FILE_HASH) {
+            // Reserve the field at the end of the header, the MD5 sum is
+            // calculated while writing the chunks and written at the end
+            output.write("MD5:".getBytes());
+            output.write(MD5_PLACEHOLDER.getBytes());
+        }
+    }
+
+    /**
+     * Get the beginning of the header, before the MD5 sum field. It only
+     * depends on the file to split, so the position of the field is known
+     * even if the first part has been written by a previous run.
+     */
+    private String getHeaderStart() {
+        // The extension
         String extension = file.getName().substring(file.getName().lastIndexOf('.') + 1) + " ";
-        access.write(extension.getBytes());
 
         // Format the number of chunks
         String number;
@@ -60,24 +89,29 @@ public final class YoyoCut extends DefaultSplitEngine
             number = "00" + parts;
         }
 
-        // Write the number of chunks
-        access.write(number.getBytes());
-
-        // Should we save MD5 sum?
-        if (config.SAVE_FILE_HASH) {
-            // Notify the view
-            this.fireMD5SumStarted();
-
-            // Get file MD5 sum
-            MD5Hasher hasher = new MD5Hasher();
-            String md5sum = hasher.hashToString(file);
-
-            // Write it a the end of the header
-            access.write("MD5:".getBytes());
-            access.write(md5sum.getBytes());
+        return extension + number;
+    }
 
-            // Notify the view again
-            this.fireMD5SumEnded();
+    /**
+     * Write the MD5 sum, calculated during the split, in the field reserved
+     * in the header of the first part.
+     */
+    private void writeMD5Sum(String firstChunk) throws IOException {
+        GRandomAccessFile access = null;
+        try {
+            // Open the first part again to update its header
+            access = new GRandomAccessFile(firstChunk, "rw");
+            access.seek(this.getHeaderStart().getBytes().length + "MD5:".length());
+            access.write(hasher.digestToString().getBytes());
+        } finally {
+            try {
+                // Close the part file
+                if (access != null) {
+                    access.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
     }
 
@@ -101,62 +135,15 @@ public final class YoyoCut extends DefaultSplitEngine
     }
 
     @Override
-    public void split() throws IOException {
-        GRandomAccessFile toSplit = null;
-        boolean run = true;
-        try {
-            // Open a new file
-            toSplit = new GRandomAccessFile(file, "r");
-
-            for (int i = 1; i <= parts; i++) {
-                GRandomAccessFile access = null;
-                File chunk = null;
-                try {
-                    // Open the part
-                    chunk = new File(this.getChunkName(destination, i));
-                    access = new GRandomAccessFile(chunk, "rw");
-
-                    // Notify the view from a new part
-                    chunks.add(chunk.getAbsolutePath());
-                    this.fireEnginePartCreated(chunk.getName());
-
-                    if (i == 1) {
-                        // Write header on the first part
-                        this.writeHeaders(access);
-                    } else if (i == parts) {
-                        // Update size to stop the split correctly
-                        size = file.length() - total;
-                    }
-
-                    // Write the chunk
-                    run = this.writeChunk(toSplit, access);
-
-                    // Writing stopped
-                    if (!run) {
-                        return;
-                    }
-
-                    // Notify the view from a written part
-                    this.fireEnginePartWritten(chunk.getName());
-                } finally {
-                    try {
-                        // Close the part file
-                        access.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
+    protected boolean useFileSum() {
+        return config.SAVE_FILE_HASH;
+    }
 
-            // Notify the end of the split
-            this.fireEngineEnded();
-        } finally {
-            try {
-                // Close the part file
-                toSplit.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+    @Override
+    protected void finishSplit() throws IOException {
+        if (config.SAVE_FILE_HASH && !chunks.isEmpty()) {
+            // Now that the whole file has been read, save the MD5 sum
+            this.writeMD5Sum(chunks.get(0));
         }
     }
 }
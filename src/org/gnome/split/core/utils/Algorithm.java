@@ -54,6 +54,16 @@ public final class Algorithm
      */
     public static final int YOYOCUT = 4;
 
+    /**
+     * Algorithm cutting the file where its content tells to.
+     */
+    public static final int CONTENT_DEFINED = 5;
+
+    /**
+     * Algorithm compressing each chunk.
+     */
+    public static final int COMPRESSED = 6;
+
     /**
      * Get a {@link String} representation of all algorithms.
      */
@@ -63,7 +73,9 @@ public final class Algorithm
             "GNOME Split",
             "Xtremsplit",
             "KFK",
-            "YoyoCut"
+            "YoyoCut",
+            _("Content defined"),
+            _("Compressed")
         };
     }
 
@@ -78,7 +90,9 @@ public final class Algorithm
             ".001.xtm",
             ".001.exe",
             ".kk0",
-            ".001.yct"
+            ".001.yct",
+            ".001.cdc",
+            ".001.gsz"
         };
     }
 
@@ -91,7 +105,9 @@ public final class Algorithm
             _("Algorithm that is specific to <i>GNOME Split</i>. It provides a file integrity check using a <b>MD5</b> sum."),
             _("Algorithm that is used by <i>Xtremsplit</i>. People who use <i>Xtremsplit</i> will be able to merge the files. It provides a file integrity check using a <b>MD5</b> sum."),
             _("Algorithm that is used by <i>KFK</i>. People who use <i>KFK</i> will be able to merge the files. The files will be mergeable with tools like <b>cat</b> too."),
-            _("Algorithm that is used by <i>YoyoCut</i>. People who use <i>YoyoCut</i> will be able to merge the files. It provides a file integrity check using a <b>MD5</b> sum.")
+            _("Algorithm that is used by <i>YoyoCut</i>. People who use <i>YoyoCut</i> will be able to merge the files. It provides a file integrity check using a <b>MD5</b> sum."),
+            _("Algorithm that cuts the file where its content tells to, so inserting data in it only changes a few parts. It is made for backups which deduplicate data. The size of the parts is an average. It provides a file integrity check using a <b>MD5</b> sum."),
+            _("Algorithm that compresses each part, using all the processors at the same time. The parts take less space but can only be merged by <i>GNOME Split</i>. It provides a file integrity check using a <b>MD5</b> sum.")
         };
     }
 
@@ -134,6 +150,16 @@ public final class Algorithm
             return true;
         }
 
+        // Content defined file format
+        if (extension.endsWith(".001.cdc")) {
+            return true;
+        }
+
+        // Compressed file format
+        if (extension.endsWith(".001.gsz")) {
+            return true;
+        }
+
         // Unknown
         return false;
     }
@@ -0,0 +1,188 @@
+/*
+ * ContentChunker.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core.utils;
+
+/**
+ * Find where chunks end using their content, so the same data always gives
+ * the same chunks wherever it is in the file. Inserting or removing some
+ * bytes only changes the chunks around them, which is what deduplicating
+ * backups need. It uses a gear rolling hash (as in FastCDC): the hash of
+ * the last 64 bytes is updated with a shift and an addition for each byte,
+ * and a chunk ends where some of its bits are all zero. The first bytes of
+ * each chunk are not even looked at, a harder condition is used until the
+ * average size is reached and an easier one after it, so the sizes stay
+ * close to the average.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class ContentChunker
+{
+    /**
+     * Random value added to the hash for each possible byte. It must never
+     * change, else the same file would not give the same chunks anymore.
+     */
+    private static final long[] GEAR;
+
+    static {
+        GEAR = new long[256];
+
+        // SplitMix64 with a fixed seed, so the table does not depend on the
+        // JVM
+        long seed = 0x5EED0F5EED0F5EEDL;
+        for (int i = 0; i < GEAR.length; i++) {
+            seed += 0x9E3779B97F4A7C15L;
+            long value = seed;
+            value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+            value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+            GEAR[i] = value ^ (value >>> 31);
+        }
+    }
+
+    /**
+     * Minimum size of a chunk.
+     */
+    private final long minimum;
+
+    /**
+     * Size a chunk should have on average.
+     */
+    private final long average;
+
+    /**
+     * Maximum size of a chunk.
+     */
+    private final long maximum;
+
+    /**
+     * Used until the average size is reached (one more bit than the average
+     * needs).
+     */
+    private final long smallMask;
+
+    /**
+     * Used once the average size is reached (one less bit than the average
+     * needs).
+     */
+    private final long largeMask;
+
+    /**
+     * Hash of the last bytes of the current chunk.
+     */
+    private long hash;
+
+    /**
+     * Number of bytes of the current chunk which have been seen.
+     */
+    private long position;
+
+    /**
+     * Create a chunker for chunks of <code>average</code> bytes, never less
+     * than <code>minimum</code> bytes (except the last one) and never more
+     * than <code>maximum</code> bytes.
+     */
+    public ContentChunker(long minimum, long average, long maximum) {
+        this.average = Math.max(1, average);
+        this.minimum = Math.max(0, Math.min(minimum, this.average - 1));
+        this.maximum = Math.max(maximum, this.average);
+
+        // Number of bits giving the average size (a boundary is found every
+        // 2^bits bytes)
+        int bits = 63 - Long.numberOfLeadingZeros(this.average);
+        this.smallMask = getMask(Math.min(bits + 1, 48));
+        this.largeMask = getMask(Math.max(bits - 1, 0));
+
+        this.reset();
+    }
+
+    /**
+     * Get a mask of the <code>bits</code> highest bits of the hash. They
+     * depend on the last 64 bytes, while the lowest ones only depend on the
+     * last few bytes.
+     */
+    private static long getMask(int bits) {
+        return (bits == 0) ? 0 : (-1L << (64 - bits));
+    }
+
+    /**
+     * Get the number of bytes at the beginning of each chunk which do not
+     * need to be given to {@link #next(byte[], int, int)}.
+     */
+    public long getMinimum() {
+        return minimum;
+    }
+
+    /**
+     * Start a new chunk. Its first {@link #getMinimum() minimum} bytes are
+     * skipped.
+     */
+    public void reset() {
+        hash = 0;
+        position = minimum;
+    }
+
+    /**
+     * Look for the end of the current chunk in <code>length</code> bytes of
+     * <code>data</code>, starting at <code>offset</code>, which follow the
+     * bytes already seen. It returns the number of bytes which belong to the
+     * chunk if its end has been found, else it returns <code>-1</code>.
+     */
+    public int next(byte[] data, int offset, int length) {
+        long current = hash;
+        int end = offset + length;
+        int i = offset;
+
+        // Before the average size, a boundary is harder to find
+        int normal = (int) Math.min(end, offset + Math.max(0, average - position));
+        for (; i < normal; i++) {
+            current = (current << 1) + GEAR[data[i] & 0xFF];
+            if ((current & smallMask) == 0) {
+                return this.found(i + 1 - offset);
+            }
+        }
+
+        // After it, a boundary is easier to find, up to the maximum size
+        int limit = (int) Math.min(end, offset + Math.max(0, maximum - position));
+        for (; i < limit; i++) {
+            current = (current << 1) + GEAR[data[i] & 0xFF];
+            if ((current & largeMask) == 0) {
+                return this.found(i + 1 - offset);
+            }
+        }
+
+        if ((position + (limit - offset)) >= maximum) {
+            // The chunk has the maximum size
+            return this.found(limit - offset);
+        }
+
+        hash = current;
+        position += length;
+        return -1;
+    }
+
+    /**
+     * Start a new chunk after one ending <code>count</code> bytes after the
+     * data given last, and return <code>count</code>.
+     */
+    private int found(int count) {
+        this.reset();
+        return count;
+    }
+}
@@ -20,16 +20,18 @@
  */
 package org.gnome.split.core.utils;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
+import org.gnome.split.core.io.BufferPool;
+
 /**
  * Class which can get the MD5 sum of a {@link File}.
  * 
@@ -37,12 +39,32 @@ import java.security.NoSuchAlgorithmException;
  */
 public class MD5Hasher
 {
+    /**
+     * Default size of the buffer used to read the data to hash.
+     */
+    private static final int DEFAULT_BUFFER_SIZE = 65536;
+
     /**
      * Used algorithm to calculate the hash.
      */
     private MessageDigest algorithm;
 
+    /**
+     * Size of the buffer used to read the data to hash.
+     */
+    private int bufferSize;
+
     public MD5Hasher() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a hasher which reads the data using a buffer of
+     * <code>bufferSize</code> bytes.
+     */
+    public MD5Hasher(int bufferSize) {
+        this.bufferSize = bufferSize;
+
         try {
             algorithm = MessageDigest.getInstance("MD5");
         } catch (NoSuchAlgorithmException e) {
@@ -54,8 +76,8 @@ public class MD5Hasher
      * Hashes the specified input stream.
      */
     private byte[] hash(InputStream input) {
-        BufferedInputStream buffer = new BufferedInputStream(input);
-        byte[] data = new byte[65536];
+        ByteBuffer buffer = BufferPool.getHeapPool().acquire(bufferSize);
+        byte[] data = buffer.array();
 
         // Reset to clean other calculation
         algorithm.reset();
@@ -63,7 +85,7 @@ public class MD5Hasher
         int read = 0;
         try {
             // Read data from the stream
-            while ((read = buffer.read(data)) > 0) {
+            while ((read = input.read(data, 0, bufferSize)) > 0) {
                 algorithm.update(data, 0, read);
             }
         } catch (IOException e) {
@@ -71,10 +93,13 @@ public class MD5Hasher
         } finally {
             try {
                 // Close stream
-                buffer.close();
+                input.close();
             } catch (IOException e) {
                 e.printStackTrace();
             }
+
+            // Give the buffer back
+            BufferPool.getHeapPool().release(buffer);
         }
 
         // Finalize calculation
@@ -85,38 +110,39 @@ public class MD5Hasher
      * Hash a specified file using the maximal length of bytes to include.
      */
     private byte[] hash(RandomAccessFile access, long start, long end) throws IOException {
-        byte[] data;
+        ByteBuffer buffer = BufferPool.getHeapPool().acquire(bufferSize);
+        byte[] data = buffer.array();
 
         // Reset to clean other calculation
         algorithm.reset();
 
-        // Where the file pointer is
-        long pointer = 0;
-
         // Data already read
         long read = 0;
 
-        // Size of the buffer
+        // Size of the data to read
         int size = 0;
 
         // Skip some bytes if needed
         if (start > 0) {
-            access.skipBytes((int) start);
+            access.seek(access.getFilePointer() + start);
             read += start;
         }
 
-        while (read < end) {
-            // Get the size of the buffer
-            pointer = access.getFilePointer();
-            size = (65536 > (end - pointer)) ? (int) (end - pointer) : 65536;
-            data = new byte[size];
+        try {
+            while (read < end) {
+                // Get the size of the data to read
+                size = (bufferSize > (end - read)) ? (int) (end - read) : bufferSize;
 
-            // Read data
-            access.read(data);
-            read += data.length;
+                // Read data
+                access.readFully(data, 0, size);
+                read += size;
 
-            // Update hash
-            algorithm.update(data);
+                // Update hash
+                algorithm.update(data, 0, size);
+            }
+        } finally {
+            // Give the buffer back
+            BufferPool.getHeapPool().release(buffer);
         }
 
         // Finalize calculation
@@ -217,4 +243,37 @@ public class MD5Hasher
     public String hashToString(File file, long start, long end) {
         return this.buildHexaString(this.hash(file, start, end));
     }
+
+    /**
+     * Start a new MD5 sum calculation which will be fed using the
+     * {@link #update(byte[], int, int) update()} method.
+     */
+    public void reset() {
+        algorithm.reset();
+    }
+
+    /**
+     * Include <code>length</code> bytes of the <code>data</code> array,
+     * starting at <code>offset</code>, in the current MD5 sum calculation.
+     */
+    public void update(byte[] data, int offset, int length) {
+        algorithm.update(data, offset, length);
+    }
+
+    /**
+     * Include the remaining bytes of the <code>data</code> buffer in the
+     * current MD5 sum calculation. The position of the buffer is moved to
+     * its limit.
+     */
+    public void update(ByteBuffer data) {
+        algorithm.update(data);
+    }
+
+    /**
+     * Finish the current MD5 sum calculation and return it as a
+     * {@link String}.
+     */
+    public String digestToString() {
+        return this.buildHexaString(algorithm.digest());
+    }
 }
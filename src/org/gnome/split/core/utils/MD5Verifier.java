@@ -0,0 +1,157 @@
+/*
+ * MD5Verifier.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.core.utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.gnome.split.core.CancellationToken;
+import org.gnome.split.core.events.MD5Event;
+
+/**
+ * Class which checks the MD5 sums of several files in the background, using
+ * a bounded number of threads. The sums are independent so they can be
+ * checked at the same time, while the caller keeps doing its work.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public final class MD5Verifier
+{
+    /**
+     * Time between two checks of the cancellation token while waiting, in
+     * milliseconds.
+     */
+    private static final long POLL = 100;
+
+    /**
+     * Threads used to calculate the MD5 sums.
+     */
+    private ExecutorService workers;
+
+    /**
+     * Size of the buffer used by each thread to read a file.
+     */
+    private int bufferSize;
+
+    /**
+     * Result of each verification, ordered like the files were given.
+     */
+    private Map<File, Future<Boolean>> results;
+
+    /**
+     * Create a verifier which uses at most <code>threads</code> threads.
+     */
+    public MD5Verifier(int threads, int bufferSize) {
+        this.workers = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "MD5 verifier");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.bufferSize = bufferSize;
+        this.results = new LinkedHashMap<File, Future<Boolean>>();
+    }
+
+    /**
+     * Schedule the verification of the MD5 sum of the <code>file</code>,
+     * including its bytes from <code>start</code> to <code>end</code>,
+     * against the <code>expected</code> sum.
+     */
+    public void verify(final File file, final long start, final long end, final String expected) {
+        results.put(file, workers.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                // Each thread needs its own hasher
+                MD5Hasher hasher = new MD5Hasher(bufferSize);
+                MD5Event event = MD5Event.start("verify", file.getPath());
+                boolean valid = expected.equals(hasher.hashToString(file, start, end));
+
+                event.bytes = end - start;
+                event.valid = valid;
+                event.commit();
+
+                return valid;
+            }
+        }));
+    }
+
+    /**
+     * Wait for all the verifications to be done and return the names of the
+     * files which do not have the expected MD5 sum. If the
+     * <code>cancellation</code> token is cancelled in the meantime, the
+     * verifications are cancelled and the returned list is incomplete.
+     */
+    public List<String> getMismatches(CancellationToken cancellation) throws InterruptedException {
+        List<String> mismatches = new ArrayList<String>();
+
+        try {
+            for (Map.Entry<File, Future<Boolean>> result : results.entrySet()) {
+                Boolean valid = null;
+                try {
+                    while (valid == null) {
+                        try {
+                            valid = result.getValue().get(POLL, TimeUnit.MILLISECONDS);
+                        } catch (TimeoutException e) {
+                            if (cancellation.isCancelled()) {
+                                // No need to wait for the other sums
+                                this.cancel();
+                                return mismatches;
+                            }
+                        }
+                    }
+                } catch (ExecutionException e) {
+                    // The file could not be read, so it can't be valid
+                    e.printStackTrace();
+                    valid = false;
+                }
+
+                if (!valid) {
+                    mismatches.add(result.getKey().getName());
+                }
+            }
+        } finally {
+            // No more verification will be done
+            workers.shutdown();
+        }
+
+        return mismatches;
+    }
+
+    /**
+     * Stop all the verifications which are scheduled or running.
+     */
+    public void cancel() {
+        workers.shutdownNow();
+    }
+}
@@ -23,6 +23,7 @@ package org.gnome.split.gtk;
 import static org.freedesktop.bindings.Internationalization._;
 import static org.gnome.split.GnomeSplit.actions;
 import static org.gnome.split.GnomeSplit.config;
+import static org.gnome.split.GnomeSplit.scheduler;
 import static org.gnome.split.GnomeSplit.ui;
 
 import java.util.ArrayList;
@@ -40,6 +41,8 @@ import org.gnome.split.core.Engine;
 import org.gnome.split.core.EngineListener;
 import org.gnome.split.core.exception.EngineException;
 import org.gnome.split.core.exception.ExceptionMessage;
+import org.gnome.split.core.exception.MD5Exception;
+import org.gnome.split.core.merger.DefaultMergeEngine;
 import org.gnome.split.core.splitter.DefaultSplitEngine;
 import org.gnome.split.core.utils.SizeUnit;
 import org.gnome.split.gtk.action.ActionManager.ActionId;
@@ -48,6 +51,8 @@ import org.gnome.split.gtk.dialog.ErrorDialog;
 /**
  * Manage the view update of the application. We *must not* set the engine
  * without using the {@link #setEngine(Engine) setEngine()} method.
+ * The engine is set and read while holding the lock of the listener, so the
+ * jobs can claim the view without racing each other.
  * 
  * @author Guillaume Mazoyer
  */
@@ -56,7 +61,7 @@ public class DefaultEngineListener implements EngineListener
     /**
      * The current engine (action).
      */
-    private Engine engine;
+    private volatile Engine engine;
 
     /**
      * A timer to schedule an action.
@@ -79,7 +84,7 @@ public class DefaultEngineListener implements EngineListener
     }
 
     @Override
-    public void setEngine(final Engine another) {
+    public synchronized void setEngine(final Engine another) {
         // Update engine
         this.engine = another;
 
@@ -88,26 +93,19 @@ public class DefaultEngineListener implements EngineListener
             public boolean run() {
                 if (engine != null) {
                     // Inhibit hibernation if requested
-                    if (config.NO_HIBERNATION) {
+                    if (config.NO_HIBERNATION && !GnomeSplit.isInhibited()) {
                         GnomeSplit.inhibit();
                     }
 
-                    // Disable user interaction (only in action widget)
-                    ui.getActionWidget().disable();
-                    ui.getViewSwitcher().disable();
-
-                    // Update the interface state
+                    // Update the interface state (the action widget stays
+                    // enabled, so other jobs can be started)
                     engineRunning();
                 } else {
-                    // Uninhibit hibernation if requested
-                    if (GnomeSplit.isInhibited()) {
+                    // Uninhibit hibernation once all jobs are done
+                    if (GnomeSplit.isInhibited() && !scheduler.isBusy()) {
                         GnomeSplit.unInhibit();
                     }
 
-                    // Enable user interaction (only in action widget)
-                    ui.getActionWidget().enable();
-                    ui.getViewSwitcher().enable();
-
                     // Reset the window's title
                     ui.setTitle(null);
 
@@ -124,22 +122,46 @@ public class DefaultEngineListener implements EngineListener
     }
 
     @Override
-    public Engine getEngine() {
+    public synchronized Engine getEngine() {
         return engine;
     }
 
     @Override
     public void engineSpeedChanged(final long speed) {
+        // Estimate the remaining time using the smoothed speed
+        Engine current = engine;
+        final long remaining = ((speed == -1) || (current == null)) ? -1 : current.getMetrics()
+                .getRemainingTime();
+
         Glib.idleAdd(new Handler() {
             @Override
             public boolean run() {
+                String text = null;
+                if (speed != -1) {
+                    text = SizeUnit.formatSpeed(speed);
+                    if (remaining != -1) {
+                        text = _("{0}, {1} left", text, formatTime(remaining));
+                    }
+                }
+
                 // Update the status widget
-                ui.getStatusWidget().updateSpeed((speed == -1) ? null : SizeUnit.formatSpeed(speed));
+                ui.getStatusWidget().updateSpeed(text);
                 return false;
             }
         });
     }
 
+    /**
+     * Get a readable representation of a duration in <code>seconds</code>.
+     */
+    private static String formatTime(long seconds) {
+        if (seconds >= 3600) {
+            return String.format("%d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+        }
+
+        return String.format("%d:%02d", seconds / 60, seconds % 60);
+    }
+
     @Override
     public void enginePartCreated(final String filename) {
         Glib.idleAdd(new Handler() {
@@ -233,16 +255,16 @@ public class DefaultEngineListener implements EngineListener
         Glib.idleAdd(new Handler() {
             @Override
             public boolean run() {
-                // Update the actions
-                actions.getAction(ActionId.ASSISTANT).setSensitive(false);
+                // Update the actions (another job can be started)
+                actions.getAction(ActionId.ASSISTANT).setSensitive(true);
                 actions.getAction(ActionId.SEND_EMAIL).setSensitive(false);
-                actions.getAction(ActionId.START).setSensitive(false);
+                actions.getAction(ActionId.START).setSensitive(true);
                 actions.getAction(ActionId.PAUSE).setSensitive(true);
                 actions.getAction(ActionId.CANCEL).setSensitive(true);
                 actions.getAction(ActionId.DELETE).setSensitive(true);
-                actions.getAction(ActionId.CLEAR).setSensitive(false);
-                actions.getRadioAction(ActionId.SPLIT).setSensitive(false);
-                actions.getRadioAction(ActionId.MERGE).setSensitive(false);
+                actions.getAction(ActionId.CLEAR).setSensitive(true);
+                actions.getRadioAction(ActionId.SPLIT).setSensitive(true);
+                actions.getRadioAction(ActionId.MERGE).setSensitive(true);
 
                 // Update the cursor
                 ui.setCursorWorkingState(true);
@@ -258,15 +280,15 @@ public class DefaultEngineListener implements EngineListener
             @Override
             public boolean run() {
                 // Update the actions
-                actions.getAction(ActionId.ASSISTANT).setSensitive(false);
+                actions.getAction(ActionId.ASSISTANT).setSensitive(true);
                 actions.getAction(ActionId.SEND_EMAIL).setSensitive(false);
                 actions.getAction(ActionId.START).setSensitive(true);
                 actions.getAction(ActionId.PAUSE).setSensitive(false);
                 actions.getAction(ActionId.CANCEL).setSensitive(true);
                 actions.getAction(ActionId.DELETE).setSensitive(true);
-                actions.getAction(ActionId.CLEAR).setSensitive(false);
-                actions.getRadioAction(ActionId.SPLIT).setSensitive(false);
-                actions.getRadioAction(ActionId.MERGE).setSensitive(false);
+                actions.getAction(ActionId.CLEAR).setSensitive(true);
+                actions.getRadioAction(ActionId.SPLIT).setSensitive(true);
+                actions.getRadioAction(ActionId.MERGE).setSensitive(true);
 
                 // Update the cursor
                 ui.setCursorWorkingState(false);
@@ -289,9 +311,22 @@ public class DefaultEngineListener implements EngineListener
             body = _("The files were successfully merged.");
         }
 
+        // File to open once merged
+        final String created;
+        if (config.OPEN_FILE_AT_END && (engine instanceof DefaultMergeEngine)) {
+            created = engine.getFilename();
+        } else {
+            created = null;
+        }
+
         Glib.idleAdd(new Handler() {
             @Override
             public boolean run() {
+                if (created != null) {
+                    // Open the created file if requested
+                    GnomeSplit.openURI("file://" + created);
+                }
+
                 // Update the status widget
                 ui.getStatusWidget().updateText(title);
                 ui.getStatusWidget().scheduleTimeout(5);
@@ -351,11 +386,29 @@ public class DefaultEngineListener implements EngineListener
                     ExceptionMessage message = error.getExceptionMessage();
 
                     if (error.isWarning()) {
+                        String details = _(message.getDetails());
+
+                        if (error instanceof MD5Exception) {
+                            // Tell which chunks do not have the right MD5 sum
+                            List<String> chunks = ((MD5Exception) error).getChunks();
+                            if (!chunks.isEmpty()) {
+                                StringBuilder names = new StringBuilder();
+                                for (String chunk : chunks) {
+                                    if (names.length() > 0) {
+                                        names.append(", ");
+                                    }
+                                    names.append(chunk);
+                                }
+
+                                details += "\n" + _("Corrupted chunks: {0}.", names.toString());
+                            }
+                        }
+
                         // Warning only (file *may* work)
-                        ui.getInfoBar().showWarning(message.getMessage(), message.getDetails());
+                        ui.getInfoBar().showWarning(_(message.getMessage()), details);
                     } else {
                         // Invalid size exception
-                        dialog = new ErrorDialog(ui, message.getMessage(), message.getDetails());
+                        dialog = new ErrorDialog(ui, _(message.getMessage()), _(message.getDetails()));
                     }
                 } else {
                     // First print the stacktrace
@@ -370,7 +423,13 @@ public class DefaultEngineListener implements EngineListener
                 }
 
                 // Update the status widget
-                ui.getStatusWidget().updateText(exception.getMessage());
+                if ((exception instanceof EngineException)
+                        && (((EngineException) exception).getExceptionMessage() != null)) {
+                    ui.getStatusWidget().updateText(
+                            _(((EngineException) exception).getExceptionMessage().getMessage()));
+                } else {
+                    ui.getStatusWidget().updateText(exception.getMessage());
+                }
                 ui.getStatusWidget().scheduleTimeout(8);
 
                 if (dialog != null) {
@@ -44,6 +44,7 @@ import org.gnome.split.GnomeSplit;
 import org.gnome.split.config.Constants;
 import org.gnome.split.gtk.action.ActionManager.ActionId;
 import org.gnome.split.gtk.widget.ActionWidget;
+import org.gnome.split.gtk.widget.JobsWidget;
 import org.gnome.split.gtk.widget.MainToolbar;
 import org.gnome.split.gtk.widget.MergeWidget;
 import org.gnome.split.gtk.widget.SelectView;
@@ -101,6 +102,11 @@ public class UserInterface extends Window implements Window.DeleteEvent
      */
     private ProgressWidget progress;
 
+    /**
+     * Widget listing the jobs.
+     */
+    private JobsWidget jobs;
+
     /**
      * Widget derived from {@link Frame} to display the status.
      */
@@ -182,6 +188,11 @@ public class UserInterface extends Window implements Window.DeleteEvent
         this.progress.show();
         this.mainContainer.packStart(this.progress, false, false, 0);
 
+        // Show the list of jobs
+        this.jobs = new JobsWidget();
+        this.jobs.showAll();
+        this.mainContainer.packStart(this.jobs, false, false, 0);
+
         // Add status widget
         this.status = new StatusWidget();
         this.status.show();
@@ -436,6 +447,13 @@ public class UserInterface extends Window implements Window.DeleteEvent
         return status;
     }
 
+    /**
+     * Get the widget that lists the jobs.
+     */
+    public JobsWidget getJobsWidget() {
+        return jobs;
+    }
+
     /**
      * Get the widget that displays events.
      */
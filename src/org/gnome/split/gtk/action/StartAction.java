@@ -21,13 +21,16 @@
 package org.gnome.split.gtk.action;
 
 import static org.freedesktop.bindings.Internationalization._;
+import static org.gnome.split.GnomeSplit.config;
 import static org.gnome.split.GnomeSplit.engine;
+import static org.gnome.split.GnomeSplit.scheduler;
 import static org.gnome.split.GnomeSplit.ui;
 
 import org.gnome.gtk.Dialog;
 import org.gnome.gtk.Stock;
 import org.gnome.split.core.Engine;
 import org.gnome.split.core.EngineFactory;
+import org.gnome.split.core.scheduler.ScheduledJob;
 import org.gnome.split.core.utils.SizeUnit;
 import org.gnome.split.gtk.dialog.ErrorDialog;
 import org.gnome.split.gtk.widget.ActionWidget;
@@ -111,26 +114,34 @@ final class StartAction extends Action
                 return;
             }
 
+            // The job knows the disks it uses, so it can run at the same time
+            // as the jobs using other disks
+            ScheduledJob job = null;
+
             // A split is performed
             if (widget instanceof SplitWidget) {
                 // Widget related info
                 SplitWidget split = (SplitWidget) widget;
 
-                // Create the new process and start it
-                run = EngineFactory.createSplitEngine(split);
-                new Thread(run, "Split - " + split.getFile().getName()).start();
+                // Create the new process
+                job = new ScheduledJob(split.getFile().getName(), engine, split.getFile(), split.getDirectory());
+                run = EngineFactory.createSplitEngine(config, job, split);
             } else if (widget instanceof MergeWidget) {
                 // Widget related info
                 MergeWidget merge = (MergeWidget) widget;
 
-                // Create the new process and start it
-                run = EngineFactory.createMergeEngine(merge);
-                new Thread(run, "Merge - " + merge.getFile().getName()).start();
+                // Create the new process
+                job = new ScheduledJob(merge.getFile().getName(), engine, merge.getFile(), merge.getDirectory());
+                run = EngineFactory.createMergeEngine(config, job, merge);
             }
 
-            // Update the interface state
-            if (run != null) {
-                engine.setEngine(run);
+            // Start it when its disks are available, the interface is
+            // updated once it is running (a job whose engine could not be
+            // created has already failed)
+            if ((run != null) && (job.getError() == null)) {
+                job.setEngine(run);
+                scheduler.submit(job);
+                ui.getJobsWidget().update();
             }
         }
     }
@@ -0,0 +1,277 @@
+/*
+ * JobsWidget.java
+ * 
+ * Copyright (c) 2009-2013 Guillaume Mazoyer
+ * 
+ * This file is part of GNOME Split.
+ * 
+ * GNOME Split is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GNOME Split is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GNOME Split.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnome.split.gtk.widget;
+
+import static org.freedesktop.bindings.Internationalization._;
+import static org.gnome.split.GnomeSplit.scheduler;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.gnome.glib.Glib;
+import org.gnome.glib.Handler;
+import org.gnome.gtk.Button;
+import org.gnome.gtk.ButtonBoxStyle;
+import org.gnome.gtk.CellRendererProgress;
+import org.gnome.gtk.CellRendererText;
+import org.gnome.gtk.DataColumn;
+import org.gnome.gtk.DataColumnInteger;
+import org.gnome.gtk.DataColumnReference;
+import org.gnome.gtk.DataColumnString;
+import org.gnome.gtk.Expander;
+import org.gnome.gtk.HButtonBox;
+import org.gnome.gtk.ListStore;
+import org.gnome.gtk.PolicyType;
+import org.gnome.gtk.ScrolledWindow;
+import org.gnome.gtk.ShadowType;
+import org.gnome.gtk.TreeIter;
+import org.gnome.gtk.TreeView;
+import org.gnome.gtk.TreeViewColumn;
+import org.gnome.gtk.VBox;
+import org.gnome.split.core.Engine;
+import org.gnome.split.core.scheduler.ScheduledJob;
+import org.gnome.split.core.utils.SizeUnit;
+
+/**
+ * An {@link Expander} which lists the jobs given to the scheduler, with
+ * their progress and their speed.
+ * 
+ * @author Guillaume Mazoyer
+ */
+public class JobsWidget extends Expander
+{
+    /**
+     * Each job.
+     */
+    private DataColumnReference<ScheduledJob> jobColumn;
+
+    /**
+     * Name of the file of each job.
+     */
+    private DataColumnString nameColumn;
+
+    /**
+     * Progress of each job (in percent).
+     */
+    private DataColumnInteger progressColumn;
+
+    /**
+     * State of each job.
+     */
+    private DataColumnString stateColumn;
+
+    /**
+     * Speed of each job.
+     */
+    private DataColumnString speedColumn;
+
+    /**
+     * Model of the list.
+     */
+    private ListStore model;
+
+    /**
+     * Row of each displayed job.
+     */
+    private Map<ScheduledJob, TreeIter> rows;
+
+    /**
+     * If the list is regularly updated.
+     */
+    private boolean updating;
+
+    public JobsWidget() {
+        super(_("Jobs"));
+
+        // Columns of the list
+        this.jobColumn = new DataColumnReference<ScheduledJob>();
+        this.nameColumn = new DataColumnString();
+        this.progressColumn = new DataColumnInteger();
+        this.stateColumn = new DataColumnString();
+        this.speedColumn = new DataColumnString();
+        this.model = new ListStore(new DataColumn[] {
+                jobColumn, nameColumn, progressColumn, stateColumn, speedColumn
+        });
+        this.rows = new HashMap<ScheduledJob, TreeIter>();
+        this.updating = false;
+
+        // Main container
+        final VBox container = new VBox(false, 3);
+        container.setBorderWidth(3);
+        this.add(container);
+
+        // Build the list
+        final TreeView view = new TreeView(model);
+        view.setHeadersVisible(true);
+
+        TreeViewColumn vertical = view.appendColumn();
+        vertical.setTitle(_("File"));
+        vertical.setExpand(true);
+        CellRendererText text = new CellRendererText(vertical);
+        text.setText(nameColumn);
+
+        vertical = view.appendColumn();
+        vertical.setTitle(_("Progress"));
+        vertical.setExpand(true);
+        CellRendererProgress progress = new CellRendererProgress(vertical);
+        progress.setValue(progressColumn);
+        progress.setText(stateColumn);
+
+        vertical = view.appendColumn();
+        vertical.setTitle(_("Speed"));
+        text = new CellRendererText(vertical);
+        text.setText(speedColumn);
+
+        // Scroll the list if there are many jobs
+        final ScrolledWindow scroll = new ScrolledWindow();
+        scroll.setPolicy(PolicyType.NEVER, PolicyType.AUTOMATIC);
+        scroll.setShadowType(ShadowType.IN);
+        scroll.setSizeRequest(-1, 120);
+        scroll.add(view);
+        container.packStart(scroll, true, true, 0);
+
+        // Buttons to stop a job and to forget the finished jobs
+        final HButtonBox buttons = new HButtonBox();
+        buttons.setLayout(ButtonBoxStyle.END);
+        container.packStart(buttons, false, false, 0);
+
+        final Button stop = new Button(_("Stop the job"));
+        stop.connect(new Button.Clicked() {
+            @Override
+            public void onClicked(Button source) {
+                TreeIter row = view.getSelection().getSelected();
+                if (row != null) {
+                    // Waiting jobs are stopped too
+                    scheduler.cancel(model.getValue(row, jobColumn));
+                    refresh();
+                }
+            }
+        });
+        buttons.add(stop);
+
+        final Button clear = new Button(_("Remove finished jobs"));
+        clear.connect(new Button.Clicked() {
+            @Override
+            public void onClicked(Button source) {
+                scheduler.removeFinished();
+                refresh();
+            }
+        });
+        buttons.add(clear);
+    }
+
+    /**
+     * Update the list regularly until the scheduler is not busy anymore. It
+     * must be called in the main loop once a job has been submitted.
+     */
+    public void update() {
+        this.refresh();
+
+        if (updating) {
+            // Already updated
+            return;
+        }
+
+        updating = true;
+        Glib.timeoutAdd(500, new Handler() {
+            @Override
+            public boolean run() {
+                refresh();
+
+                if (!scheduler.isBusy()) {
+                    // Nothing will change until another job is submitted
+                    updating = false;
+                    return false;
+                }
+
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Update the list using the jobs of the scheduler.
+     */
+    private void refresh() {
+        List<ScheduledJob> jobs = scheduler.getJobs();
+
+        // Remove the jobs which are not scheduled anymore
+        Iterator<Map.Entry<ScheduledJob, TreeIter>> iterator = rows.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<ScheduledJob, TreeIter> row = iterator.next();
+            if (!jobs.contains(row.getKey())) {
+                model.removeRow(row.getValue());
+                iterator.remove();
+            }
+        }
+
+        for (ScheduledJob job : jobs) {
+            TreeIter row = rows.get(job);
+            if (row == null) {
+                // New job
+                row = model.appendRow();
+                model.setValue(row, jobColumn, job);
+                model.setValue(row, nameColumn, job.getName());
+                rows.put(job, row);
+            }
+
+            Engine engine = job.getEngine();
+            boolean paused = (engine != null) && engine.paused();
+
+            int percent = 0;
+            if (job.getState() == ScheduledJob.ENDED) {
+                percent = 100;
+            } else if (job.getTotal() > 0) {
+                percent = (int) ((job.getDone() * 100) / job.getTotal());
+            }
+
+            String state;
+            switch (job.getState()) {
+            case ScheduledJob.QUEUED:
+                state = _("Waiting");
+                break;
+            case ScheduledJob.RUNNING:
+                state = paused ? _("Suspended") : (percent + "%");
+                break;
+            case ScheduledJob.ENDED:
+                state = _("Done");
+                break;
+            case ScheduledJob.STOPPED:
+                state = _("Stopped");
+                break;
+            default:
+                state = _("Failed");
+                break;
+            }
+
+            String speed = "";
+            if ((job.getState() == ScheduledJob.RUNNING) && !paused && (job.getSpeed() >= 0)) {
+                speed = SizeUnit.formatSpeed(job.getSpeed());
+            }
+
+            model.setValue(row, progressColumn, percent);
+            model.setValue(row, stateColumn, state);
+            model.setValue(row, speedColumn, speed);
+        }
+    }
+}
@@ -25,7 +25,12 @@ import static org.gnome.split.GnomeSplit.config;
 import static org.gnome.split.GnomeSplit.ui;
 
 import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
+import org.gnome.glib.Glib;
+import org.gnome.glib.Handler;
 import org.gnome.gtk.Dialog;
 import org.gnome.gtk.Entry;
 import org.gnome.gtk.FileChooserAction;
@@ -37,6 +42,7 @@ import org.gnome.gtk.HBox;
 import org.gnome.gtk.Label;
 import org.gnome.gtk.VBox;
 import org.gnome.gtk.Widget;
+import org.gnome.split.GnomeSplit;
 import org.gnome.split.core.merger.DefaultMergeEngine;
 import org.gnome.split.core.model.MergeModel;
 import org.gnome.split.core.utils.SizeUnit;
@@ -49,6 +55,19 @@ import org.gnome.split.gtk.dialog.ErrorDialog;
  */
 public class MergeWidget extends VBox implements ActionWidget, MergeModel
 {
+    /**
+     * Thread used to read the headers of the chosen chunks, which can be
+     * slow on network file systems.
+     */
+    private static final ExecutorService prober = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Merge prober");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
     /**
      * Define if the widget is visible or not.
      */
@@ -89,6 +108,12 @@ public class MergeWidget extends VBox implements ActionWidget, MergeModel
      */
     private long size;
 
+    /**
+     * Count the chosen files, so only the last one is displayed once its
+     * headers have been read.
+     */
+    private int probes;
+
     public MergeWidget() {
         super(false, 12);
 
@@ -116,6 +141,8 @@ public class MergeWidget extends VBox implements ActionWidget, MergeModel
         final FileFilter chk = new FileFilter(_("Valid chunks"));
         chk.addPattern("*.001.gsp");
         chk.addPattern("*.001.xtm");
+        chk.addPattern("*.001.cdc");
+        chk.addPattern("*.001.gsz");
         chk.addPattern("*.000");
         chk.addPattern("*.001");
 
@@ -198,12 +225,10 @@ public class MergeWidget extends VBox implements ActionWidget, MergeModel
     }
 
     /**
-     * Load the first file to merge. It is used to find informations about the
-     * future merge.
+     * Display the informations about the future merge, found by reading the
+     * first file to merge.
      */
-    private boolean loadFile(File file) {
-        // Load the file
-        DefaultMergeEngine engine = DefaultMergeEngine.getInstance(file, null);
+    private boolean loadFile(DefaultMergeEngine engine) {
         if (engine == null) {
             Dialog dialog = new ErrorDialog(
                     ui,
@@ -361,19 +386,44 @@ public class MergeWidget extends VBox implements ActionWidget, MergeModel
     }
 
     /**
-     * Set the first file to merge and update the widget.
+     * Set the first file to merge and update the widget once the file has
+     * been read in the background.
      */
-    public void setFile(String filename) {
-        boolean load = false;
+    public void setFile(final String filename) {
+        final int probe = ++probes;
 
-        // Load the file
-        load = loadFile(new File(filename));
+        // Nothing can be merged until the file is read
+        destEntry.setText("");
+        partsNumber.setLabel(_("Unknown"));
+        fileSize.setLabel(_("Unknown"));
+        md5sum.setLabel(_("Unknown"));
 
-        // If the load succeeded, update the view
-        if (!load) {
-            this.reset();
-        } else {
-            fileChooser.setFilename(filename);
-        }
+        prober.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Load the file, its headers are kept for the merge
+                final DefaultMergeEngine engine = DefaultMergeEngine.probe(config, GnomeSplit.engine, new File(
+                        filename));
+
+                Glib.idleAdd(new Handler() {
+                    @Override
+                    public boolean run() {
+                        if (probe != probes) {
+                            // Another file has been chosen since
+                            return false;
+                        }
+
+                        // If the load succeeded, update the view
+                        if (!loadFile(engine)) {
+                            reset();
+                        } else {
+                            fileChooser.setFilename(filename);
+                        }
+
+                        return false;
+                    }
+                });
+            }
+        });
     }
 }
@@ -80,6 +80,8 @@ public class MergeAssistant extends BasicAssistant
         final FileFilter chunks = new FileFilter(_("Valid chunks"));
         chunks.addPattern("*.001.gsp");
         chunks.addPattern("*.001.xtm");
+        chunks.addPattern("*.001.cdc");
+        chunks.addPattern("*.001.gsz");
         chunks.addPattern("*.000");
         chunks.addPattern("*.001");
 